@@ -0,0 +1,66 @@
+package com.krgamestudios.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+  @Param({"loop", "concat", "nested"})
+  String workload;
+
+  @Param({"small", "medium", "large"})
+  String size;
+
+  //"walker" is the tree-walking Interpreter, "switch" is the same dispatching on node tags,
+  //"flat" walks the AST lowered into an int[], "vm" is the bytecode backend
+  @Param({"walker", "switch", "flat", "vm"})
+  String backend;
+
+  //off by default, so walker and switch compare dispatch; with it on, loops compiled in one invocation stay compiled
+  //on the shared AST for the rest, and the tree-walkers mostly measure the LoopCompiler's bytecode
+  @Param({"false"})
+  boolean jit;
+
+  private List<Stmt> statements;
+  private FlatAst flat;
+  private Chunk chunk;
+
+  //the scripts print, which isn't what's being measured
+  private Context context;
+
+  @Setup
+  public void Setup() {
+    Context.Options options = new Context.Options();
+    options.useJit = jit;
+    context = Workloads.NewContext(options);
+    String source = Workloads.Generate(workload, size);
+
+    //the same passes Context.Execute() runs for each backend; the tree ones annotate the AST, so the vm gets its own
+    statements = Context.Prepare(context.Parse(source));
+    flat = new FlatLowerer().Lower(statements);
+    chunk = new Compiler(context).Compile(new Optimizer().Optimize(context.Parse(source)));
+  }
+
+  @Benchmark
+  public void Interpret() {
+    if (backend.equals("vm")) {
+      new VM(context).Interpret(chunk);
+    }
+    else if (backend.equals("flat")) {
+      new FlatInterpreter(context).Interpret(flat);
+    }
+    else if (backend.equals("switch")) {
+      new SwitchInterpreter(context).Interpret(statements);
+    }
+    else {
+      new Interpreter(context).Interpret(statements);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.krgamestudios.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+  @Param({"loop", "concat", "nested"})
+  String workload;
+
+  @Param({"small", "medium", "large"})
+  String size;
+
+  private String source;
+  private Context context;
+
+  @Setup
+  public void Setup() {
+    source = Workloads.Generate(workload, size);
+    context = Workloads.NewContext();
+  }
+
+  @Benchmark
+  public List<Token> ScanTokens() {
+    return new Lexer(source, context).ScanTokens();
+  }
+
+  @Benchmark
+  public TokenBuffer ScanBuffer() {
+    return new Lexer(source, context).ScanBuffer();
+  }
+}
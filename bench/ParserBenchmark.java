@@ -0,0 +1,42 @@
+package com.krgamestudios.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+  @Param({"loop", "concat", "nested"})
+  String workload;
+
+  @Param({"small", "medium", "large"})
+  String size;
+
+  private List<Token> tokens;
+  private TokenBuffer buffer;
+  private Context context;
+
+  @Setup
+  public void Setup() {
+    String source = Workloads.Generate(workload, size);
+    context = Workloads.NewContext();
+    tokens = new Lexer(source, context).ScanTokens();
+    buffer = new Lexer(source, context).ScanBuffer();
+  }
+
+  @Benchmark
+  public List<Stmt> Parse() {
+    return new Parser(tokens, context).Parse();
+  }
+
+  @Benchmark
+  public List<Stmt> ParseBuffer() {
+    return new Parser(buffer.Rewind(), context).Parse();
+  }
+}
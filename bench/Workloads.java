@@ -0,0 +1,87 @@
+package com.krgamestudios.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+//generates Lox sources of a given shape and approximate size for the benchmarks
+final class Workloads {
+  static final int SMALL = 1024;
+  static final int MEDIUM = 64 * 1024;
+  static final int LARGE = 4 * 1024 * 1024;
+
+  private Workloads() {}
+
+  //a context whose script output is discarded
+  static Context NewContext() {
+    return NewContext(new Context.Options());
+  }
+
+  static Context NewContext(Context.Options options) {
+    OutputSink output = new OutputSink.Buffered(new PrintStream(OutputStream.nullOutputStream()), 8192);
+    return new Context(options, output, System.err);
+  }
+
+  static String Generate(String workload, String size) {
+    int target;
+    switch(size) {
+      case "small": target = SMALL; break;
+      case "medium": target = MEDIUM; break;
+      case "large": target = LARGE; break;
+      default: throw new IllegalArgumentException("Unknown size: " + size);
+    }
+
+    String unit;
+    switch(workload) {
+      case "loop": unit = LoopUnit(); break;
+      case "concat": unit = ConcatUnit(); break;
+      case "nested": unit = NestedUnit(32); break;
+      default: throw new IllegalArgumentException("Unknown workload: " + workload);
+    }
+
+    //repeat the unit until the source reaches the target size
+    StringBuilder builder = new StringBuilder(target + unit.length());
+    builder.append("var total = 0;\n");
+    while (builder.length() < target) {
+      builder.append(unit);
+    }
+    builder.append("print total;\n");
+    return builder.toString();
+  }
+
+  //arithmetic in a counted loop
+  private static String LoopUnit() {
+    return
+      "{\n" +
+      "  var sum = 0;\n" +
+      "  for (var i = 0; i < 20; i = i + 1) {\n" +
+      "    sum = sum + i * 2 - 1;\n" +
+      "  }\n" +
+      "  total = total + sum;\n" +
+      "}\n";
+  }
+
+  //repeated string building
+  private static String ConcatUnit() {
+    return
+      "{\n" +
+      "  var s = \"\";\n" +
+      "  for (var i = 0; i < 20; i = i + 1) {\n" +
+      "    s = s + \"chunk\";\n" +
+      "  }\n" +
+      "  if (s == \"\") total = total + 1;\n" +
+      "}\n";
+  }
+
+  //blocks nested to the given depth, each declaring a variable
+  private static String NestedUnit(int depth) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      builder.append("{ var v").append(i).append(" = ").append(i).append(";\n");
+    }
+    builder.append("total = total + v0 + v").append(depth - 1).append(";\n");
+    for (int i = 0; i < depth; i++) {
+      builder.append("}\n");
+    }
+    return builder.toString();
+  }
+}
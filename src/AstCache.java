@@ -0,0 +1,344 @@
+package com.krgamestudios.lox;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//binary cache of parsed scripts, so unchanged scripts can skip the Lexer and Parser
+//a CacheFile stamped with the token type count, whose payload is the statements in preorder
+class AstCache {
+  private static final int MAGIC = 0x4A4C4F58; //"JLOX"
+  private static final int VERSION = 2;
+  static final String EXTENSION = ".jloxc";
+
+  private AstCache() {}
+
+  //a cache directory holds one file per content hash, otherwise it sits beside the script
+  static Path PathFor(Path script, Path cacheDir, byte[] hash) {
+    if (cacheDir != null) {
+      return cacheDir.resolve(Hex(hash) + EXTENSION);
+    }
+    return script.resolveSibling(script.getFileName() + EXTENSION);
+  }
+
+  //returns null for a missing, stale or corrupt cache
+  static List<Stmt> Load(Path path, byte[] hash) {
+    DataInputStream payload = CacheFile.Read(path, MAGIC, VERSION, TokenType.values().length, hash);
+    if (payload == null) return null;
+
+    try {
+      return new Reader(payload).ReadStatements();
+    }
+    catch(IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  //failing to write the cache only costs the next run a parse
+  static void Store(Path path, byte[] hash, List<Stmt> statements) {
+    CacheFile.Write(path, MAGIC, VERSION, TokenType.values().length, hash, out -> new Writer(out).WriteStatements(statements));
+  }
+
+  private static String Hex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(String.format("%02x", b));
+    }
+    return builder.toString();
+  }
+
+  //node tags
+  private static final byte ASSIGN = 0;
+  private static final byte BINARY = 1;
+  private static final byte GROUPING = 2;
+  private static final byte LITERAL = 3;
+  private static final byte LOGICAL = 4;
+  private static final byte UNARY = 5;
+  private static final byte VARIABLE = 6;
+
+  private static final byte BLOCK = 7;
+  private static final byte EXPRESSION = 8;
+  private static final byte IF = 9;
+  private static final byte PRINT = 10;
+  private static final byte VAR = 11;
+  private static final byte WHILE = 12;
+  private static final byte NONE = 13;
+
+  //literal tags
+  private static final byte NIL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte NUMBER = 2;
+  private static final byte STRING = 3;
+
+  //serializes the trees in preorder
+  private static class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final DataOutputStream out;
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void WriteStatements(List<Stmt> statements) throws IOException {
+      out.writeInt(statements.size());
+      for (Stmt statement : statements) {
+        Write(statement);
+      }
+    }
+
+    //AST types
+    @Override
+    public Void Visit(Expr.Assign expr) {
+      Tag(ASSIGN);
+      Write(expr.name);
+      Write(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Binary expr) {
+      Tag(BINARY);
+      Write(expr.lhs);
+      Write(expr.operator);
+      Write(expr.rhs);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Grouping expr) {
+      Tag(GROUPING);
+      Write(expr.expression);
+      return null;
+    }
+
+    //hoisting happens after parsing, so these never reach the cache; store the plain expression anyway
+    @Override
+    public Void Visit(Expr.Invariant expr) {
+      Write(expr.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Literal expr) {
+      Tag(LITERAL);
+      WriteLiteral(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Logical expr) {
+      Tag(LOGICAL);
+      Write(expr.lhs);
+      Write(expr.operator);
+      Write(expr.rhs);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Unary expr) {
+      Tag(UNARY);
+      Write(expr.operator);
+      Write(expr.rhs);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Variable expr) {
+      Tag(VARIABLE);
+      Write(expr.name);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Block stmt) {
+      Tag(BLOCK);
+      try {
+        WriteStatements(stmt.statements);
+      }
+      catch(IOException e) {
+        throw new SerializationError(e);
+      }
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Expression stmt) {
+      Tag(EXPRESSION);
+      Write(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.If stmt) {
+      Tag(IF);
+      Write(stmt.condition);
+      Write(stmt.thenBranch);
+      Write(stmt.elseBranch);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Print stmt) {
+      Tag(PRINT);
+      Write(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Var stmt) {
+      Tag(VAR);
+      Write(stmt.name);
+      Write(stmt.initializer);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.While stmt) {
+      Tag(WHILE);
+      Write(stmt.keyword);
+      Write(stmt.condition);
+      Write(stmt.body);
+      return null;
+    }
+
+    //helpers
+    private void Write(Stmt stmt) {
+      if (stmt == null) {
+        Tag(NONE);
+        return;
+      }
+      stmt.Accept(this);
+    }
+
+    private void Write(Expr expr) {
+      if (expr == null) {
+        Tag(NONE);
+        return;
+      }
+      expr.Accept(this);
+    }
+
+    private void Write(Token token) {
+      try {
+        out.writeByte(token.type.ordinal());
+        CacheFile.WriteString(out, token.Lexeme());
+        WriteLiteral(token.literal);
+        out.writeInt(token.line);
+      }
+      catch(IOException e) {
+        throw new SerializationError(e);
+      }
+    }
+
+    private void WriteLiteral(Object value) {
+      try {
+        if (value == null) {
+          out.writeByte(NIL);
+        }
+        else if (value instanceof Boolean) {
+          out.writeByte(BOOLEAN);
+          out.writeBoolean((Boolean)value);
+        }
+        else if (value instanceof Double) {
+          out.writeByte(NUMBER);
+          out.writeDouble((Double)value);
+        }
+        else {
+          out.writeByte(STRING);
+          CacheFile.WriteString(out, (String)value);
+        }
+      }
+      catch(IOException e) {
+        throw new SerializationError(e);
+      }
+    }
+
+    private void Tag(byte tag) {
+      try {
+        out.writeByte(tag);
+      }
+      catch(IOException e) {
+        throw new SerializationError(e);
+      }
+    }
+  }
+
+  //rebuilds the trees from a Writer's output
+  private static class Reader {
+    private final DataInputStream in;
+
+    Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    List<Stmt> ReadStatements() throws IOException {
+      int count = in.readInt();
+      List<Stmt> statements = new ArrayList<>(Math.min(count, 1024));
+      for (int i = 0; i < count; i++) {
+        statements.add(ReadStmt());
+      }
+      return statements;
+    }
+
+    private Stmt ReadStmt() throws IOException {
+      byte tag = in.readByte();
+      switch(tag) {
+        case BLOCK: return new Stmt.Block(ReadStatements());
+        case EXPRESSION: return new Stmt.Expression(ReadExpr());
+        case IF: return new Stmt.If(ReadExpr(), ReadStmt(), ReadStmt());
+        case PRINT: return new Stmt.Print(ReadExpr());
+        case VAR: return new Stmt.Var(ReadToken(), ReadExpr());
+        case WHILE: return new Stmt.While(ReadToken(), ReadExpr(), ReadStmt());
+        case NONE: return null;
+      }
+      throw new IOException("Unknown statement tag " + tag);
+    }
+
+    private Expr ReadExpr() throws IOException {
+      byte tag = in.readByte();
+      switch(tag) {
+        case ASSIGN: return new Expr.Assign(ReadToken(), ReadExpr());
+        case BINARY: return new Expr.Binary(ReadExpr(), ReadToken(), ReadExpr());
+        case GROUPING: return new Expr.Grouping(ReadExpr());
+        case LITERAL: return new Expr.Literal(ReadLiteral());
+        case LOGICAL: return new Expr.Logical(ReadExpr(), ReadToken(), ReadExpr());
+        case UNARY: return new Expr.Unary(ReadToken(), ReadExpr());
+        case VARIABLE: return new Expr.Variable(ReadToken());
+        case NONE: return null;
+      }
+      throw new IOException("Unknown expression tag " + tag);
+    }
+
+    private Token ReadToken() throws IOException {
+      TokenType type = TokenType.values()[in.readUnsignedByte()];
+      String lexeme = CacheFile.ReadString(in);
+      Object literal = ReadLiteral();
+      int line = in.readInt();
+      return new Token(type, lexeme, literal, line);
+    }
+
+    private Object ReadLiteral() throws IOException {
+      byte tag = in.readByte();
+      switch(tag) {
+        case NIL: return null;
+        case BOOLEAN: return in.readBoolean();
+        case NUMBER: return in.readDouble();
+        case STRING: return CacheFile.ReadString(in);
+      }
+      throw new IOException("Unknown literal tag " + tag);
+    }
+  }
+
+  //carries IOExceptions out through the visitor methods
+  private static class SerializationError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    SerializationError(IOException cause) {
+      super(cause);
+    }
+  }
+}
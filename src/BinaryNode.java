@@ -0,0 +1,194 @@
+package com.krgamestudios.lox;
+
+//self-specializing implementations of Expr.Binary
+//each node starts UNINITIALIZED, rewrites itself to match the operand types it sees,
+//and falls back to GENERIC for good the first time a specialization misses
+abstract class BinaryNode {
+  static final BinaryNode UNINITIALIZED = new Uninitialized();
+  static final BinaryNode GENERIC = new Generic();
+
+  abstract Object Execute(Interpreter interpreter, Expr.Binary expr);
+
+  //evaluate a child as a primitive double, skipping the boxing between numeric nodes
+  static double EvaluateDouble(Interpreter interpreter, Expr expr) throws UnexpectedResult {
+    if (expr instanceof Expr.Binary) {
+      Expr.Binary binary = (Expr.Binary)expr;
+      if (binary.node instanceof NumberArithmetic) {
+        return ((NumberArithmetic)binary.node).ExecuteDouble(interpreter, binary);
+      }
+    }
+
+    Object value = interpreter.Evaluate(expr);
+    if (value instanceof Double) return (double)value;
+    throw new UnexpectedResult(value);
+  }
+
+  //choose a specialization from the first operands seen
+  private static BinaryNode Specialize(TokenType type, Object lhs, Object rhs) {
+    if (lhs instanceof Double && rhs instanceof Double) {
+      switch(type) {
+        case PLUS: return NumberArithmetic.ADD;
+        case MINUS: return NumberArithmetic.SUBTRACT;
+        case STAR: return NumberArithmetic.MULTIPLY;
+        case SLASH: return NumberArithmetic.DIVIDE;
+        case GREATER: return NumberComparison.GREATER;
+        case GREATER_EQUAL: return NumberComparison.GREATER_EQUAL;
+        case LESS: return NumberComparison.LESS;
+        case LESS_EQUAL: return NumberComparison.LESS_EQUAL;
+      }
+    }
+
+    if (type == TokenType.PLUS && Rope.IsString(lhs) && Rope.IsString(rhs)) {
+      return StringConcat.INSTANCE;
+    }
+
+    return GENERIC;
+  }
+
+  //thrown when a child produced a value the specialization didn't expect
+  static class UnexpectedResult extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final Object value;
+
+    UnexpectedResult(Object value) {
+      super(null, null, false, false);
+      this.value = value;
+    }
+  }
+
+  private static class Uninitialized extends BinaryNode {
+    @Override
+    Object Execute(Interpreter interpreter, Expr.Binary expr) {
+      Object lhs = interpreter.Evaluate(expr.lhs);
+      Object rhs = interpreter.Evaluate(expr.rhs);
+      expr.node = Specialize(expr.operator.type, lhs, rhs);
+      return Interpreter.ApplyBinary(expr, lhs, rhs);
+    }
+  }
+
+  private static class Generic extends BinaryNode {
+    @Override
+    Object Execute(Interpreter interpreter, Expr.Binary expr) {
+      Object lhs = interpreter.Evaluate(expr.lhs);
+      Object rhs = interpreter.Evaluate(expr.rhs);
+      return Interpreter.ApplyBinary(expr, lhs, rhs);
+    }
+  }
+
+  //number (op) number -> number
+  private abstract static class NumberArithmetic extends BinaryNode {
+    static final NumberArithmetic ADD = new NumberArithmetic() {
+      double Apply(double lhs, double rhs) { return lhs + rhs; }
+    };
+    static final NumberArithmetic SUBTRACT = new NumberArithmetic() {
+      double Apply(double lhs, double rhs) { return lhs - rhs; }
+    };
+    static final NumberArithmetic MULTIPLY = new NumberArithmetic() {
+      double Apply(double lhs, double rhs) { return lhs * rhs; }
+    };
+    static final NumberArithmetic DIVIDE = new NumberArithmetic() {
+      double Apply(double lhs, double rhs) { return lhs / rhs; }
+    };
+
+    abstract double Apply(double lhs, double rhs);
+
+    @Override
+    Object Execute(Interpreter interpreter, Expr.Binary expr) {
+      try {
+        return ExecuteDouble(interpreter, expr);
+      }
+      catch(UnexpectedResult result) {
+        return result.value;
+      }
+    }
+
+    double ExecuteDouble(Interpreter interpreter, Expr.Binary expr) throws UnexpectedResult {
+      double lhs;
+      try {
+        lhs = EvaluateDouble(interpreter, expr.lhs);
+      }
+      catch(UnexpectedResult miss) {
+        throw new UnexpectedResult(Deoptimize(interpreter, expr, miss.value));
+      }
+
+      double rhs;
+      try {
+        rhs = EvaluateDouble(interpreter, expr.rhs);
+      }
+      catch(UnexpectedResult miss) {
+        throw new UnexpectedResult(Deoptimize(interpreter, expr, lhs, miss.value));
+      }
+
+      return Apply(lhs, rhs);
+    }
+  }
+
+  //number (op) number -> boolean
+  private abstract static class NumberComparison extends BinaryNode {
+    static final NumberComparison GREATER = new NumberComparison() {
+      boolean Apply(double lhs, double rhs) { return lhs > rhs; }
+    };
+    static final NumberComparison GREATER_EQUAL = new NumberComparison() {
+      boolean Apply(double lhs, double rhs) { return lhs >= rhs; }
+    };
+    static final NumberComparison LESS = new NumberComparison() {
+      boolean Apply(double lhs, double rhs) { return lhs < rhs; }
+    };
+    static final NumberComparison LESS_EQUAL = new NumberComparison() {
+      boolean Apply(double lhs, double rhs) { return lhs <= rhs; }
+    };
+
+    abstract boolean Apply(double lhs, double rhs);
+
+    @Override
+    Object Execute(Interpreter interpreter, Expr.Binary expr) {
+      double lhs;
+      try {
+        lhs = EvaluateDouble(interpreter, expr.lhs);
+      }
+      catch(UnexpectedResult miss) {
+        return Deoptimize(interpreter, expr, miss.value);
+      }
+
+      double rhs;
+      try {
+        rhs = EvaluateDouble(interpreter, expr.rhs);
+      }
+      catch(UnexpectedResult miss) {
+        return Deoptimize(interpreter, expr, lhs, miss.value);
+      }
+
+      return Apply(lhs, rhs);
+    }
+  }
+
+  //string + string -> string
+  private static class StringConcat extends BinaryNode {
+    static final StringConcat INSTANCE = new StringConcat();
+
+    @Override
+    Object Execute(Interpreter interpreter, Expr.Binary expr) {
+      Object lhs = interpreter.Evaluate(expr.lhs);
+      Object rhs = interpreter.Evaluate(expr.rhs);
+      if (Rope.IsString(lhs) && Rope.IsString(rhs)) {
+        return Rope.Concat(lhs, rhs);
+      }
+
+      expr.node = GENERIC;
+      return Interpreter.ApplyBinary(expr, lhs, rhs);
+    }
+  }
+
+  //helpers, finishing the evaluation generically once the lhs or rhs missed
+  private static Object Deoptimize(Interpreter interpreter, Expr.Binary expr, Object lhs) {
+    expr.node = GENERIC;
+    Object rhs = interpreter.Evaluate(expr.rhs);
+    return Interpreter.ApplyBinary(expr, lhs, rhs);
+  }
+
+  private static Object Deoptimize(Interpreter interpreter, Expr.Binary expr, double lhs, Object rhs) {
+    expr.node = GENERIC;
+    return Interpreter.ApplyBinary(expr, lhs, rhs);
+  }
+}
@@ -0,0 +1,94 @@
+package com.krgamestudios.lox;
+
+//per-run limits on steps, wall-clock time and string bytes, for running scripts that can't be trusted to finish
+//a step is a loop iteration or a statement run inside a block; straight-line code is bounded by the source anyway
+//steps are counted down between safepoints, so the clock is only read every CHECK_INTERVAL steps
+//time only runs while the interpreter does, so a REPL waiting on its user doesn't use any of it
+class Budget {
+  static final int CHECK_INTERVAL = 1024;
+
+  //members
+  private final long maxSteps; //0 for no limit
+  private final long maxNanos;
+  private final long maxBytes;
+
+  private long steps = 0; //taken before the current countdown started
+  private int countdown;
+  private int interval; //what the countdown started from
+
+  private long elapsed = 0; //over previous runs
+  private long started = 0;
+
+  private long bytes = 0;
+
+  private Budget(long maxSteps, long maxMillis, long maxBytes) {
+    this.maxSteps = maxSteps;
+    this.maxNanos = maxMillis * 1_000_000L;
+    this.maxBytes = maxBytes;
+    Rearm();
+  }
+
+  //null when there's nothing to enforce, so the interpreter's checks are a single null test
+  static Budget For(Context.Options options) {
+    if (options.maxSteps <= 0 && options.maxMillis <= 0 && options.maxBytes <= 0) {
+      return null;
+    }
+    return new Budget(options.maxSteps, options.maxMillis, options.maxBytes);
+  }
+
+  void Start() {
+    started = System.nanoTime();
+  }
+
+  void Stop() {
+    elapsed += System.nanoTime() - started;
+  }
+
+  //called once per step, with the loop or statement taking it
+  void Step(Stmt stmt) {
+    if (--countdown <= 0) {
+      Safepoint(stmt);
+    }
+  }
+
+  //called with the size of every string the script builds
+  void Allocate(long size, int line) {
+    bytes += size;
+    if (maxBytes > 0 && bytes > maxBytes) {
+      throw new RuntimeError(line, "Allocation budget of " + maxBytes + " bytes exceeded.");
+    }
+  }
+
+  //helpers
+  private void Safepoint(Stmt stmt) {
+    steps += interval;
+    if (maxSteps > 0 && steps > maxSteps) {
+      throw new RuntimeError(Line(stmt), "Step budget of " + maxSteps + " exceeded.");
+    }
+    if (maxNanos > 0 && elapsed + System.nanoTime() - started > maxNanos) {
+      throw new RuntimeError(Line(stmt), "Time budget of " + (maxNanos / 1_000_000L) + "ms exceeded.");
+    }
+    Rearm();
+  }
+
+  //blocks have no line of their own, so use the first statement that does
+  private static int Line(Stmt stmt) {
+    int line = LineFinder.Find(stmt);
+    if (line < 0 && stmt instanceof Stmt.Block) {
+      for (Stmt statement : ((Stmt.Block)stmt).statements) {
+        line = Line(statement);
+        if (line >= 0) break;
+      }
+    }
+    return Math.max(line, 0);
+  }
+
+  //count down to the next clock check, or to the first step over the limit if that comes sooner
+  private void Rearm() {
+    interval = CHECK_INTERVAL;
+    if (maxSteps > 0) {
+      interval = (int)Math.min(interval, maxSteps - steps + 1);
+    }
+    countdown = interval;
+  }
+}
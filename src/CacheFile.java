@@ -0,0 +1,137 @@
+package com.krgamestudios.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+//the file format shared by AstCache and HeapSnapshot: work saved from an earlier run, keyed by the hash of its source
+//layout: magic, version, stamp, source hash, payload length, payload, payload crc
+//the stamp is anything else that invalidates the file, such as how many token types there are
+final class CacheFile {
+  //writes a payload; IOExceptions abandon the file
+  interface Payload {
+    void Write(DataOutputStream out) throws IOException;
+  }
+
+  private CacheFile() {}
+
+  //the charset is part of the key, since it changes how the bytes were decoded
+  static byte[] Hash(byte[] source, Charset charset) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(charset.name().getBytes(StandardCharsets.UTF_8));
+      digest.update(source);
+      return digest.digest();
+    }
+    catch(NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  //the payload, or null for a missing, stale or corrupt file
+  static DataInputStream Read(Path path, int magic, int version, int stamp, byte[] hash) {
+    if (!Files.isRegularFile(path)) return null;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != magic) return null;
+      if (in.readInt() != version) return null;
+      if (in.readInt() != stamp) return null;
+
+      byte[] stored = new byte[hash.length];
+      in.readFully(stored);
+      if (!Arrays.equals(stored, hash)) return null;
+
+      int length = in.readInt();
+      if (length < 0 || length > Files.size(path)) return null;
+
+      byte[] payload = new byte[length];
+      in.readFully(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if (in.readLong() != crc.getValue()) return null;
+
+      return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+    catch(IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  //failing to write only costs the next run the work the file would have saved, so errors are ignored
+  static void Write(Path path, int magic, int version, int stamp, byte[] hash, Payload payload) {
+    Path temp = null;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      payload.Write(out);
+      out.flush();
+
+      CRC32 crc = new CRC32();
+      crc.update(bytes.toByteArray());
+
+      //write beside the target and move it into place, so readers never see a partial file
+      Path dir = path.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      temp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+
+      try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        file.writeInt(magic);
+        file.writeInt(version);
+        file.writeInt(stamp);
+        file.write(hash);
+        file.writeInt(bytes.size());
+        bytes.writeTo(file);
+        file.writeLong(crc.getValue());
+      }
+
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      temp = null;
+    }
+    catch(IOException | RuntimeException e) {
+      //ignore
+    }
+    finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        }
+        catch(IOException e) {
+          //ignore
+        }
+      }
+    }
+  }
+
+  //writeUTF is limited to 64KB, which strings in a script can exceed
+  static void WriteString(DataOutput out, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String ReadString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > in.available()) throw new IOException("Bad string length " + length);
+
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,61 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//a compiled program: bytecode, constant pool and a run-length line table
+class Chunk {
+  //members
+  byte[] code = new byte[256];
+  int count = 0;
+
+  final List<Object> constants = new ArrayList<>();
+  private final Map<Object, Integer> constantIndices = new HashMap<>();
+
+  //pairs of (first offset, line), only appended when the line changes
+  private int[] lines = new int[32];
+  private int lineCount = 0;
+
+  //methods
+  void Write(int b, int line) {
+    if (count == code.length) {
+      byte[] grown = new byte[code.length * 2];
+      System.arraycopy(code, 0, grown, 0, count);
+      code = grown;
+    }
+
+    if (lineCount == 0 || lines[lineCount - 1] != line) {
+      if (lineCount + 2 > lines.length) {
+        int[] grown = new int[lines.length * 2];
+        System.arraycopy(lines, 0, grown, 0, lineCount);
+        lines = grown;
+      }
+      lines[lineCount++] = count;
+      lines[lineCount++] = line;
+    }
+
+    code[count++] = (byte)b;
+  }
+
+  //identical constants share one pool entry
+  int AddConstant(Object value) {
+    Integer index = constantIndices.get(value);
+    if (index != null) {
+      return index;
+    }
+
+    constants.add(value);
+    constantIndices.put(value, constants.size() - 1);
+    return constants.size() - 1;
+  }
+
+  int GetLine(int offset) {
+    int line = 0;
+    for (int i = 0; i < lineCount && lines[i] <= offset; i += 2) {
+      line = lines[i + 1];
+    }
+    return line;
+  }
+}
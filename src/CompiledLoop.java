@@ -0,0 +1,114 @@
+package com.krgamestudios.lox;
+
+import java.lang.invoke.MethodHandle;
+
+//a hot while loop, translated to JVM bytecode by the LoopCompiler
+//the generated method keeps every variable the loop touches in a JVM local, typed as the values were when it was compiled;
+//Run() checks the variables still hold those types, copies them in, runs the rest of the loop and copies back what it assigned
+class CompiledLoop {
+  //iterations a loop runs in the tree-walker, over all its entries, before it's compiled
+  static final int THRESHOLD = 1000;
+
+  //marks a loop the LoopCompiler can't handle, so it isn't tried again
+  static final CompiledLoop UNSUPPORTED = new CompiledLoop(null, new Variable[0], 0, 0);
+
+  //a variable declared outside the loop, and where it lives in the arrays passed to the generated method
+  static class Variable {
+    final Token name; //for globals
+    final int depth; //relative to the environment the loop runs in, -1 for globals
+    final int slot;
+    final boolean number; //otherwise boolean
+    final int index;
+    boolean assigned = false;
+
+    Variable(Token name, int depth, int slot, boolean number, int index) {
+      this.name = name;
+      this.depth = depth;
+      this.slot = slot;
+      this.number = number;
+      this.index = index;
+    }
+
+    Object Read(Environment environment, Environment globals) {
+      return depth < 0 ? globals.Get(name) : environment.GetAt(depth, slot);
+    }
+
+    void Write(Environment environment, Environment globals, Object value) {
+      if (depth < 0) {
+        globals.Assign(name, value);
+      }
+      else {
+        environment.AssignAt(depth, slot, value);
+      }
+    }
+  }
+
+  //members
+  private final MethodHandle handle; //(double[], boolean[])void
+  private final Variable[] variables;
+  private final int numberCount;
+  private final int booleanCount;
+
+  CompiledLoop(MethodHandle handle, Variable[] variables, int numberCount, int booleanCount) {
+    this.handle = handle;
+    this.variables = variables;
+    this.numberCount = numberCount;
+    this.booleanCount = booleanCount;
+  }
+
+  //called by the Interpreter before each iteration; true if the rest of the loop ran compiled
+  static boolean Enter(Stmt.While stmt, Environment environment, Environment globals) {
+    CompiledLoop compiled = stmt.compiled;
+    if (compiled == null) {
+      if (++stmt.hotness < THRESHOLD) return false;
+      compiled = LoopCompiler.Compile(stmt, environment, globals);
+      stmt.compiled = compiled;
+    }
+    return compiled.Run(environment, globals);
+  }
+
+  //false, having changed nothing, if a guard fails
+  boolean Run(Environment environment, Environment globals) {
+    if (handle == null) return false;
+
+    double[] numbers = new double[numberCount];
+    boolean[] booleans = new boolean[booleanCount];
+
+    for (Variable variable : variables) {
+      Object value;
+      try {
+        value = variable.Read(environment, globals);
+      }
+      catch(RuntimeError error) {
+        //undefined; let the tree-walker report it
+        return false;
+      }
+
+      if (variable.number) {
+        if (!(value instanceof Double)) return false;
+        numbers[variable.index] = (double)value;
+      }
+      else {
+        if (!(value instanceof Boolean)) return false;
+        booleans[variable.index] = (boolean)value;
+      }
+    }
+
+    try {
+      handle.invokeExact(numbers, booleans);
+    }
+    catch(RuntimeException | Error e) {
+      throw e;
+    }
+    catch(Throwable t) {
+      throw new IllegalStateException(t);
+    }
+
+    for (Variable variable : variables) {
+      if (!variable.assigned) continue;
+      Object value = variable.number ? (Object)numbers[variable.index] : (Object)booleans[variable.index];
+      variable.Write(environment, globals, value);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,323 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//lowers the AST into a Chunk for the VM
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+  //members
+  private final Chunk chunk = new Chunk();
+  private final Context context;
+
+  //locals mirror the VM stack, so a local's index is its stack slot
+  private final List<String> localNames = new ArrayList<>();
+  private final List<Integer> localDepths = new ArrayList<>();
+  private int scopeDepth = 0;
+
+  //the most recent source line seen, for the line table
+  private int line = 1;
+
+  Compiler(Context context) {
+    this.context = context;
+  }
+
+  //wrapper functions
+  Chunk Compile(List<Stmt> statements) {
+    for (Stmt statement : statements) {
+      Compile(statement);
+    }
+    Emit(OpCode.RETURN);
+    return chunk;
+  }
+
+  //AST types
+  @Override
+  public Void Visit(Expr.Assign expr) {
+    Compile(expr.value);
+    line = expr.name.line;
+
+    int slot = ResolveLocal(expr.name.Lexeme());
+    if (slot >= 0) {
+      Emit(OpCode.SET_LOCAL);
+      EmitShort(slot);
+    }
+    else {
+      Emit(OpCode.SET_GLOBAL);
+      EmitShort(Constant(expr.name.Lexeme()));
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Binary expr) {
+    Compile(expr.lhs);
+    Compile(expr.rhs);
+    line = expr.operator.line;
+
+    switch (expr.operator.type) {
+      case BANG_EQUAL: Emit(OpCode.NOT_EQUAL); break;
+      case EQUAL_EQUAL: Emit(OpCode.EQUAL); break;
+      case GREATER: Emit(OpCode.GREATER); break;
+      case GREATER_EQUAL: Emit(OpCode.GREATER_EQUAL); break;
+      case LESS: Emit(OpCode.LESS); break;
+      case LESS_EQUAL: Emit(OpCode.LESS_EQUAL); break;
+      case MINUS: Emit(OpCode.SUBTRACT); break;
+      case PLUS: Emit(OpCode.ADD); break;
+      case SLASH: Emit(OpCode.DIVIDE); break;
+      case STAR: Emit(OpCode.MULTIPLY); break;
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Grouping expr) {
+    Compile(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Invariant expr) {
+    Compile(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Literal expr) {
+    if (expr.value == null) {
+      Emit(OpCode.NIL);
+    }
+    else if (expr.value.equals(true)) {
+      Emit(OpCode.TRUE);
+    }
+    else if (expr.value.equals(false)) {
+      Emit(OpCode.FALSE);
+    }
+    else {
+      Emit(OpCode.CONSTANT);
+      EmitShort(Constant(expr.value));
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Logical expr) {
+    Compile(expr.lhs);
+    line = expr.operator.line;
+
+    //short circuit, leaving the deciding operand on the stack
+    if (expr.operator.type == TokenType.OR) {
+      int elseJump = EmitJump(OpCode.JUMP_IF_FALSE);
+      int endJump = EmitJump(OpCode.JUMP);
+      PatchJump(elseJump);
+      Emit(OpCode.POP);
+      Compile(expr.rhs);
+      PatchJump(endJump);
+    }
+    else {
+      int endJump = EmitJump(OpCode.JUMP_IF_FALSE);
+      Emit(OpCode.POP);
+      Compile(expr.rhs);
+      PatchJump(endJump);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Unary expr) {
+    Compile(expr.rhs);
+    line = expr.operator.line;
+
+    switch(expr.operator.type) {
+      case MINUS: Emit(OpCode.NEGATE); break;
+      case BANG: Emit(OpCode.NOT); break;
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Variable expr) {
+    line = expr.name.line;
+
+    int slot = ResolveLocal(expr.name.Lexeme());
+    if (slot >= 0) {
+      Emit(OpCode.GET_LOCAL);
+      EmitShort(slot);
+    }
+    else {
+      Emit(OpCode.GET_GLOBAL);
+      EmitShort(Constant(expr.name.Lexeme()));
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Block stmt) {
+    scopeDepth++;
+    for (Stmt statement : stmt.statements) {
+      Compile(statement);
+    }
+    scopeDepth--;
+
+    //discard the block's locals
+    int count = 0;
+    while (!localDepths.isEmpty() && localDepths.get(localDepths.size() - 1) > scopeDepth) {
+      localNames.remove(localNames.size() - 1);
+      localDepths.remove(localDepths.size() - 1);
+      count++;
+    }
+    if (count == 1) {
+      Emit(OpCode.POP);
+    }
+    else if (count > 1) {
+      Emit(OpCode.POP_N);
+      EmitShort(count);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Expression stmt) {
+    Compile(stmt.expression);
+    Emit(OpCode.POP);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.If stmt) {
+    Compile(stmt.condition);
+
+    int thenJump = EmitJump(OpCode.JUMP_IF_FALSE);
+    Emit(OpCode.POP);
+    Compile(stmt.thenBranch);
+
+    int elseJump = EmitJump(OpCode.JUMP);
+    PatchJump(thenJump);
+    Emit(OpCode.POP);
+
+    if (stmt.elseBranch != null) {
+      Compile(stmt.elseBranch);
+    }
+    PatchJump(elseJump);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Print stmt) {
+    Compile(stmt.expression);
+    Emit(OpCode.PRINT);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Var stmt) {
+    //the initializer can't see the variable being declared
+    if (stmt.initializer != null) {
+      Compile(stmt.initializer);
+    }
+    else {
+      Emit(OpCode.NIL);
+    }
+    line = stmt.name.line;
+
+    if (scopeDepth == 0) {
+      Emit(OpCode.DEFINE_GLOBAL);
+      EmitShort(Constant(stmt.name.Lexeme()));
+      return null;
+    }
+
+    //redeclaring a name within the same block reuses its slot
+    for (int i = localNames.size() - 1; i >= 0 && localDepths.get(i) == scopeDepth; i--) {
+      if (localNames.get(i).equals(stmt.name.Lexeme())) {
+        Emit(OpCode.SET_LOCAL);
+        EmitShort(i);
+        Emit(OpCode.POP);
+        return null;
+      }
+    }
+
+    if (localNames.size() > 0xFFFF) {
+      context.Error(stmt.name, "Too many local variables.");
+    }
+
+    //the value stays on the stack as the new local
+    localNames.add(stmt.name.Lexeme());
+    localDepths.add(scopeDepth);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.While stmt) {
+    line = stmt.keyword.line;
+    int loopStart = chunk.count;
+    Compile(stmt.condition);
+
+    int exitJump = EmitJump(OpCode.JUMP_IF_FALSE);
+    Emit(OpCode.POP);
+    Compile(stmt.body);
+    EmitLoop(loopStart);
+
+    PatchJump(exitJump);
+    Emit(OpCode.POP);
+    return null;
+  }
+
+  //helpers
+  private void Compile(Stmt stmt) {
+    stmt.Accept(this);
+  }
+
+  private void Compile(Expr expr) {
+    expr.Accept(this);
+  }
+
+  private int ResolveLocal(String name) {
+    for (int i = localNames.size() - 1; i >= 0; i--) {
+      if (localNames.get(i).equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int Constant(Object value) {
+    int index = chunk.AddConstant(value);
+    if (index > 0xFFFF) {
+      context.Error(line, "Too many constants in one chunk.");
+    }
+    return index;
+  }
+
+  private void Emit(byte op) {
+    chunk.Write(op, line);
+  }
+
+  private void EmitShort(int value) {
+    chunk.Write((value >> 8) & 0xFF, line);
+    chunk.Write(value & 0xFF, line);
+  }
+
+  private int EmitJump(byte op) {
+    Emit(op);
+    EmitShort(0xFFFF);
+    return chunk.count - 2;
+  }
+
+  private void PatchJump(int offset) {
+    //-2 to adjust for the jump offset itself
+    int jump = chunk.count - offset - 2;
+    if (jump > 0xFFFF) {
+      context.Error(line, "Too much code to jump over.");
+    }
+    chunk.code[offset] = (byte)((jump >> 8) & 0xFF);
+    chunk.code[offset + 1] = (byte)(jump & 0xFF);
+  }
+
+  private void EmitLoop(int loopStart) {
+    Emit(OpCode.LOOP);
+    int offset = chunk.count - loopStart + 2;
+    if (offset > 0xFFFF) {
+      context.Error(line, "Loop body too large.");
+    }
+    EmitShort(offset);
+  }
+}
@@ -0,0 +1,271 @@
+package com.krgamestudios.lox;
+
+//exceptions
+import java.io.IOException;
+
+import java.io.PrintStream;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+//an isolated instance of the language: its own interpreter, globals, error state and streams
+//nothing here is shared between contexts, so separate contexts can run on separate threads
+class Context {
+  //settings chosen on the command line, fixed before any context runs
+  static class Options {
+    boolean useVM = false;
+    boolean useStream = false;
+    boolean useCache = false;
+    Path cacheDir = null;
+    boolean profile = false;
+    Path profilePath = null; //defaults to the script's path plus ".folded"
+    int profileLines = 10;
+    boolean useJit = true;
+    boolean useSwitch = false; //dispatch on node tags instead of visitors
+    boolean useFlat = false; //run a FlatAst instead of the object AST
+    boolean useStack = false; //parse and run without recursing, for deeply nested scripts
+    boolean useParallel = false; //run independent top-level statements at the same time
+    Path prelude = null; //run before the script, or restored from its snapshot
+    Path snapshotPath = null; //defaults to the prelude's path plus ".jloxs"
+    long maxSteps = 0; //limits for untrusted scripts, 0 for none
+    long maxMillis = 0;
+    long maxBytes = 0;
+  }
+
+  //members
+  boolean errorState = false;
+  final Options options;
+  final OutputSink output;
+  private final PrintStream err;
+  final Environment globals;
+
+  final Profiler profiler; //null unless profiling
+
+  //backends are made on first use, so a context only builds the one its options pick
+  private Interpreter interpreter;
+  private FlatInterpreter flat;
+  private StackInterpreter stack;
+  private VM vm;
+  private Scheduler scheduler;
+
+  Context(Options options, OutputSink output, PrintStream err) {
+    this(options, output, err, new Environment());
+  }
+
+  Context(Options options, OutputSink output, PrintStream err, Environment globals) {
+    this.options = options;
+    this.output = output;
+    this.err = err;
+    this.globals = globals;
+    this.profiler = options.profile ? new Profiler() : null;
+  }
+
+  //wrapper functions
+  void RunFile(String path) throws IOException {
+    RunPrelude();
+    if (errorState) return;
+
+    if (profiler == null) {
+      RunScript(path);
+      return;
+    }
+
+    profiler.Start();
+    try {
+      RunScript(path);
+    }
+    finally {
+      profiler.Stop();
+      WriteProfile(path);
+    }
+  }
+
+  //restores the globals the prelude leaves behind from its snapshot, or runs it and takes one
+  //a snapshot is only used while it matches the prelude's source, and what the prelude prints isn't part of it
+  void RunPrelude() throws IOException {
+    if (options.prelude == null) return;
+
+    byte[] bytes = Files.readAllBytes(options.prelude);
+    byte[] hash = CacheFile.Hash(bytes, Charset.defaultCharset());
+    Path snapshotPath = HeapSnapshot.PathFor(options.prelude, options.snapshotPath);
+
+    Map<String, Object> snapshot = HeapSnapshot.Load(snapshotPath, hash);
+    if (snapshot != null) {
+      for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+        globals.Define(entry.getKey(), entry.getValue());
+      }
+      return;
+    }
+
+    Run(new String(bytes, Charset.defaultCharset()));
+    if (errorState) return;
+
+    HeapSnapshot.Store(snapshotPath, hash, globals.Values());
+  }
+
+  private void RunScript(String path) throws IOException {
+    if (options.useStream) {
+      RunStream(path);
+    }
+    else if (options.useCache) {
+      RunCached(Paths.get(path));
+    }
+    else {
+      byte[] bytes = Files.readAllBytes(Paths.get(path));
+      Run(new String(bytes, Charset.defaultCharset()));
+    }
+  }
+
+  //each top-level declaration runs as soon as it's parsed, so the whole program is never in memory
+  //unlike Run(), statements before a syntax error have already executed by the time it's found
+  void RunStream(String path) throws IOException {
+    StreamLexer lexer = new StreamLexer(FileChannel.open(Paths.get(path)), Charset.defaultCharset(), this);
+    Parser parser = NewParser(lexer);
+
+    while (parser.HasNext()) {
+      Stmt statement = parser.ParseNext();
+
+      //keep parsing after an error, to report the rest of them
+      if (errorState) continue;
+
+      Execute(Arrays.asList(statement));
+    }
+  }
+
+  //unchanged scripts load their AST from the cache instead of being lexed and parsed
+  void RunCached(Path path) throws IOException {
+    byte[] bytes = Files.readAllBytes(path);
+    byte[] hash = CacheFile.Hash(bytes, Charset.defaultCharset());
+    Path cachePath = AstCache.PathFor(path, options.cacheDir, hash);
+
+    List<Stmt> statements = AstCache.Load(cachePath, hash);
+    if (statements == null) {
+      statements = Parse(new String(bytes, Charset.defaultCharset()));
+      if (errorState) return;
+      AstCache.Store(cachePath, hash, statements);
+    }
+
+    Execute(statements);
+  }
+
+  //the collapsed stacks go to a file for flame-graph tools, and the hottest lines to the error stream
+  void WriteProfile(String path) throws IOException {
+    Path profilePath = options.profilePath != null ? options.profilePath : Paths.get(path + ".folded");
+    profiler.WriteCollapsed(profilePath);
+    profiler.PrintSummary(err, options.profileLines);
+    err.print("profile: wrote ");
+    err.println(profilePath);
+  }
+
+  //core functions
+  void Run(String source) {
+    List<Stmt> statements = Parse(source);
+
+    if (errorState) return;
+
+    Execute(statements);
+  }
+
+  List<Stmt> Parse(String source) {
+    Lexer lexer = new Lexer(source, this);
+    Parser parser = NewParser(lexer.ScanBuffer());
+
+    return parser.Parse();
+  }
+
+  private Parser NewParser(TokenStream tokens) {
+    return options.useStack ? new StackParser(tokens, this) : new Parser(tokens, this);
+  }
+
+  void Execute(List<Stmt> statements) {
+    if (options.useVM) {
+      Optimizer optimizer = new Optimizer();
+      Chunk chunk = new Compiler(this).Compile(optimizer.Optimize(statements));
+      if (errorState) return;
+      if (vm == null) {
+        vm = new VM(this);
+      }
+      vm.Interpret(chunk);
+      return;
+    }
+
+    //the passes in Prepare() all recurse, so they're skipped
+    if (options.useStack) {
+      if (stack == null) {
+        stack = new StackInterpreter(this);
+      }
+      stack.Interpret(statements);
+      return;
+    }
+
+    if (options.useFlat) {
+      if (flat == null) {
+        flat = new FlatInterpreter(this);
+      }
+      flat.Interpret(new FlatLowerer().Lower(Prepare(statements)));
+      return;
+    }
+
+    if (options.useParallel) {
+      if (scheduler == null) {
+        scheduler = new Scheduler(this, err);
+      }
+      scheduler.Interpret(Prepare(statements));
+      return;
+    }
+
+    Interpret(Prepare(statements));
+  }
+
+  //the tree-walker's passes between parsing and running; the result can be run any number of times, on any context
+  static List<Stmt> Prepare(List<Stmt> statements) {
+    Optimizer optimizer = new Optimizer();
+    statements = optimizer.Optimize(statements);
+
+    statements = new LoopHoister().Hoist(statements);
+
+    Resolver resolver = new Resolver();
+    resolver.Resolve(statements);
+
+    return statements;
+  }
+
+  void Interpret(List<Stmt> prepared) {
+    if (interpreter == null) {
+      interpreter = options.useSwitch && profiler == null ? new SwitchInterpreter(this) : new Interpreter(this);
+    }
+    interpreter.Interpret(prepared);
+  }
+
+  //error functions
+  void Error(int line, String msg) {
+    Report(line, "", msg);
+  }
+
+  void Error(Token token, String msg) {
+    if (token.type == TokenType.EOF) {
+      Report(token.line, " at end of file", msg);
+    }
+    else {
+      Report(token.line, "at '" + token.Lexeme() + "'", msg);
+    }
+  }
+
+  void RuntimeError(RuntimeError error) {
+    Report(error.line, "", error.getMessage());
+  }
+
+  //what the script printed before the error comes out before it, even when streaming has run part of the script already
+  private void Report(int line, String where, String msg) {
+    output.Flush();
+    err.println("[line " + line + "] Error" + where + ": " + msg);
+    errorState = true;
+  }
+}
@@ -1,43 +1,120 @@
 package com.krgamestudios.lox;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 class Environment {
-  private final Map<String, Object> values = new HashMap();
-  final Environment parent;
+  //globals live in the map, resolved locals live in the slot array
+  private final Map<String, Object> values;
+  private final Object[] slots;
+  Environment parent; //only changed by Reset()
 
   Environment() {
+    values = new HashMap<>();
+    slots = null;
     parent = null;
   }
 
   Environment(Environment parent) {
+    values = new HashMap<>();
+    slots = null;
     this.parent = parent;
   }
 
+  //globals kept in a map owned by someone else, such as a script engine's Bindings
+  Environment(Environment parent, Map<String, Object> values) {
+    this.values = values;
+    slots = null;
+    this.parent = parent;
+  }
+
+  Environment(Environment parent, int size) {
+    values = null;
+    slots = new Object[size];
+    this.parent = parent;
+  }
+
+  //slot environments are pooled by the Interpreter, and reused for a later block at the same depth
+  void Reset(Environment parent) {
+    this.parent = parent;
+    Arrays.fill(slots, null);
+  }
+
+  int Capacity() {
+    return slots.length;
+  }
+
+  //a copy of a map environment, such as the globals, that can change without touching this one
+  //ropes are flattened, since a rope still shares its builder with anything later appended to it
+  Environment Snapshot() {
+    Map<String, Object> copy = new HashMap<>();
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      copy.put(entry.getKey(), Rope.Flatten(entry.getValue()));
+    }
+    return new Environment(parent, copy);
+  }
+
+  //a map environment's names and values, such as the globals for a HeapSnapshot
+  Map<String, Object> Values() {
+    return values;
+  }
+
+  //name-based access
+  boolean Has(String name) {
+    return values.containsKey(name);
+  }
+
   void Define(String name, Object value) {
     values.put(name, value);
   }
 
   void Assign(Token name, Object value) {
-    if (values.containsKey(name.lexeme)) {
-      values.put(name.lexeme, value);
-      return;
-    }
-    if (parent != null) {
-      parent.Assign(name, value);
-      return;
-    }
-    throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    Assign(name.Lexeme(), name.line, value);
   }
 
   Object Get(Token name) {
-    if (values.containsKey(name.lexeme)) {
-      return values.get(name.lexeme);
+    return Get(name.Lexeme(), name.line);
+  }
+
+  //the line is only used for the error; the chain is walked in a loop, since it can be as long as blocks can nest
+  void Assign(String name, int line, Object value) {
+    for (Environment environment = this; environment != null; environment = environment.parent) {
+      if (environment.values != null && environment.values.containsKey(name)) {
+        environment.values.put(name, value);
+        return;
+      }
+    }
+    throw new RuntimeError(line, "Undefined variable '" + name + "'.");
+  }
+
+  Object Get(String name, int line) {
+    for (Environment environment = this; environment != null; environment = environment.parent) {
+      if (environment.values != null && environment.values.containsKey(name)) {
+        return environment.values.get(name);
+      }
     }
-    if (parent != null) {
-      return parent.Get(name);
+    throw new RuntimeError(line, "Undefined variable '" + name + "'.");
+  }
+
+  //slot-based access, using the (depth, slot) pairs computed by the Resolver
+  void DefineAt(int slot, Object value) {
+    slots[slot] = value;
+  }
+
+  void AssignAt(int depth, int slot, Object value) {
+    Ancestor(depth).slots[slot] = value;
+  }
+
+  Object GetAt(int depth, int slot) {
+    return Ancestor(depth).slots[slot];
+  }
+
+  private Environment Ancestor(int depth) {
+    Environment environment = this;
+    for (int i = 0; i < depth; i++) {
+      environment = environment.parent;
     }
-    throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    return environment;
   }
 }
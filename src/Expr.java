@@ -2,11 +2,30 @@ package com.krgamestudios.lox;
 
 import java.util.List;
 
-abstract class Expr {
+abstract sealed class Expr permits Expr.Assign, Expr.Binary, Expr.Grouping, Expr.Invariant, Expr.Literal, Expr.Logical, Expr.Unary, Expr.Variable {
+  //tags, for dispatching with a switch
+  static final int ASSIGN = 0;
+  static final int BINARY = 1;
+  static final int GROUPING = 2;
+  static final int INVARIANT = 3;
+  static final int LITERAL = 4;
+  static final int LOGICAL = 5;
+  static final int UNARY = 6;
+  static final int VARIABLE = 7;
+
+  final int tag;
+
+  Expr(int tag) {
+    this.tag = tag;
+  }
+
+  Profiler.Frame frame; //null unless profiling
+
   interface Visitor<R> {
     R Visit(Assign expr);
     R Visit(Binary expr);
     R Visit(Grouping expr);
+    R Visit(Invariant expr);
     R Visit(Literal expr);
     R Visit(Logical expr);
     R Visit(Unary expr);
@@ -15,11 +34,14 @@ abstract class Expr {
 
   abstract <R> R Accept(Visitor<R> visitor);
 
-  static class Assign extends Expr {
+  static final class Assign extends Expr {
     final Token name;
     final Expr value;
+    int depth = -1;
+    int slot;
 
     Assign(Token name,Expr value) {
+      super(ASSIGN);
       this.name = name;
       this.value = value;
     }
@@ -29,12 +51,14 @@ abstract class Expr {
     }
   }
 
-  static class Binary extends Expr {
+  static final class Binary extends Expr {
     final Expr lhs;
     final Token operator;
     final Expr rhs;
+    BinaryNode node = BinaryNode.UNINITIALIZED;
 
     Binary(Expr lhs,Token operator,Expr rhs) {
+      super(BINARY);
       this.lhs = lhs;
       this.operator = operator;
       this.rhs = rhs;
@@ -45,10 +69,25 @@ abstract class Expr {
     }
   }
 
-  static class Grouping extends Expr {
+  static final class Grouping extends Expr {
     final Expr expression;
 
     Grouping(Expr expression) {
+      super(GROUPING);
+      this.expression = expression;
+    }
+
+    <R> R Accept(Visitor<R> visitor) {
+      return visitor.Visit(this);
+    }
+  }
+
+  static final class Invariant extends Expr {
+    final Expr expression;
+    int index;
+
+    Invariant(Expr expression) {
+      super(INVARIANT);
       this.expression = expression;
     }
 
@@ -57,10 +96,11 @@ abstract class Expr {
     }
   }
 
-  static class Literal extends Expr {
+  static final class Literal extends Expr {
     final Object value;
 
     Literal(Object value) {
+      super(LITERAL);
       this.value = value;
     }
 
@@ -69,12 +109,13 @@ abstract class Expr {
     }
   }
 
-  static class Logical extends Expr {
+  static final class Logical extends Expr {
     final Expr lhs;
     final Token operator;
     final Expr rhs;
 
     Logical(Expr lhs,Token operator,Expr rhs) {
+      super(LOGICAL);
       this.lhs = lhs;
       this.operator = operator;
       this.rhs = rhs;
@@ -85,11 +126,12 @@ abstract class Expr {
     }
   }
 
-  static class Unary extends Expr {
+  static final class Unary extends Expr {
     final Token operator;
     final Expr rhs;
 
     Unary(Token operator,Expr rhs) {
+      super(UNARY);
       this.operator = operator;
       this.rhs = rhs;
     }
@@ -99,10 +141,13 @@ abstract class Expr {
     }
   }
 
-  static class Variable extends Expr {
+  static final class Variable extends Expr {
     final Token name;
+    int depth = -1;
+    int slot;
 
     Variable(Token name) {
+      super(VARIABLE);
       this.name = name;
     }
 
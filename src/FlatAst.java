@@ -0,0 +1,37 @@
+package com.krgamestudios.lox;
+
+//a prepared AST, lowered by the FlatLowerer into one int[] in preorder, with literals and names in side tables
+//each node starts with its Expr or Stmt tag, followed by its operands and then its children:
+//
+//  Assign     name, depth, slot, line, value
+//  Binary     operator, line, rhs offset, lhs, rhs
+//  Invariant  index, expression
+//  Literal    constant
+//  Logical    or (1) / and (0), rhs offset, lhs, rhs
+//  Unary      operator, line, rhs
+//  Variable   name, depth, slot, line
+//
+//  Block      slots, count, statement offsets..., statements
+//  Expression expression
+//  If         then offset, else offset or -1, condition, then, else
+//  Print      expression
+//  Var        name, slot, initializer offset or -1, initializer
+//  While      body offset, invariant count, invariant indexes..., condition, body
+//
+//the first child always follows its parent's operands, so only later children need an offset
+//groupings are dropped, since they only matter to the parser
+final class FlatAst {
+  final int[] code;
+  final Object[] constants;
+  final String[] names;
+  final int[] statements; //offsets of the top-level statements
+  final int invariantCount;
+
+  FlatAst(int[] code, Object[] constants, String[] names, int[] statements, int invariantCount) {
+    this.code = code;
+    this.constants = constants;
+    this.names = names;
+    this.statements = statements;
+    this.invariantCount = invariantCount;
+  }
+}
@@ -0,0 +1,210 @@
+package com.krgamestudios.lox;
+
+import java.util.Arrays;
+
+import static com.krgamestudios.lox.TokenType.*;
+
+//the tree-walker's semantics, over a FlatAst: nodes are offsets into one int[], so walking it reads memory in order
+//binary operations always take the generic path; there are no node objects to specialize
+class FlatInterpreter {
+  private static final TokenType[] TYPES = TokenType.values();
+  private static final Object UNSET = new Object();
+
+  //members
+  private final Context context;
+  private final OutputSink output;
+  private final Environment globals;
+  private Environment environment;
+
+  //block environments, one per nesting depth, as in the Interpreter
+  private Environment[] pool = new Environment[16];
+  private int depth = 0;
+
+  //the program being run
+  private int[] code;
+  private Object[] constants;
+  private String[] names;
+  private Object[] invariants;
+
+  FlatInterpreter(Context context) {
+    this.context = context;
+    this.output = context.output;
+    this.globals = context.globals;
+    this.environment = globals;
+  }
+
+  //wrapper functions
+  void Interpret(FlatAst ast) {
+    code = ast.code;
+    constants = ast.constants;
+    names = ast.names;
+    invariants = new Object[ast.invariantCount];
+
+    try {
+      for (int statement : ast.statements) {
+        Execute(statement);
+      }
+    }
+    catch(RuntimeError error) {
+      //keep the output that came before the error in order with the report
+      output.Flush();
+      context.RuntimeError(error);
+    }
+  }
+
+  //statements
+  private void Execute(int node) {
+    switch(code[node]) {
+      case Stmt.BLOCK: {
+        int slots = code[node + 1];
+        int count = code[node + 2];
+
+        //the Resolver gave this block no scope, because it declares nothing
+        if (slots == 0) {
+          for (int i = 0; i < count; i++) {
+            Execute(code[node + 3 + i]);
+          }
+          return;
+        }
+
+        Environment previous = environment;
+        depth++;
+        try {
+          environment = Acquire(slots);
+          for (int i = 0; i < count; i++) {
+            Execute(code[node + 3 + i]);
+          }
+        }
+        finally {
+          environment = previous;
+          depth--;
+        }
+        return;
+      }
+
+      case Stmt.EXPRESSION:
+        Evaluate(node + 1);
+        return;
+
+      case Stmt.IF:
+        if (Interpreter.IsTruthy(Evaluate(node + 3))) {
+          Execute(code[node + 1]);
+        }
+        else if (code[node + 2] >= 0) {
+          Execute(code[node + 2]);
+        }
+        return;
+
+      case Stmt.PRINT:
+        output.Print(Interpreter.Stringify(Evaluate(node + 1)));
+        return;
+
+      case Stmt.VAR: {
+        int initializer = code[node + 3];
+        Object value = initializer >= 0 ? Evaluate(initializer) : null;
+        int slot = code[node + 2];
+        if (slot < 0) {
+          globals.Define(names[code[node + 1]], value);
+        }
+        else {
+          environment.DefineAt(slot, value);
+        }
+        return;
+      }
+
+      case Stmt.WHILE: {
+        int body = code[node + 1];
+        int invariantCount = code[node + 2];
+        for (int i = 0; i < invariantCount; i++) {
+          invariants[code[node + 3 + i]] = UNSET;
+        }
+
+        int condition = node + 3 + invariantCount;
+        while(Interpreter.IsTruthy(Evaluate(condition))) {
+          Execute(body);
+        }
+        return;
+      }
+    }
+  }
+
+  //expressions
+  private Object Evaluate(int node) {
+    switch(code[node]) {
+      case Expr.ASSIGN: {
+        Object value = Evaluate(node + 5);
+        int depth = code[node + 2];
+        if (depth < 0) {
+          globals.Assign(names[code[node + 1]], code[node + 4], value);
+        }
+        else {
+          environment.AssignAt(depth, code[node + 3], value);
+        }
+        return value;
+      }
+
+      case Expr.BINARY: {
+        Object lhs = Evaluate(node + 4);
+        Object rhs = Evaluate(code[node + 3]);
+        return Interpreter.ApplyBinary(TYPES[code[node + 1]], code[node + 2], lhs, rhs);
+      }
+
+      case Expr.INVARIANT: {
+        int index = code[node + 1];
+        Object value = invariants[index];
+        if (value == UNSET) {
+          value = Evaluate(node + 2);
+          invariants[index] = value;
+        }
+        return value;
+      }
+
+      case Expr.LITERAL:
+        return constants[code[node + 1]];
+
+      case Expr.LOGICAL: {
+        Object lhs = Evaluate(node + 3);
+        boolean or = code[node + 1] == 1;
+        if (or == Interpreter.IsTruthy(lhs)) return lhs;
+        return Evaluate(code[node + 2]);
+      }
+
+      case Expr.UNARY: {
+        Object rhs = Evaluate(node + 3);
+        if (TYPES[code[node + 1]] == MINUS) {
+          Interpreter.CheckNumberOperand(code[node + 2], rhs);
+          return -(double)rhs;
+        }
+        return !Interpreter.IsTruthy(rhs);
+      }
+
+      case Expr.VARIABLE: {
+        int depth = code[node + 2];
+        if (depth < 0) {
+          return globals.Get(names[code[node + 1]], code[node + 4]);
+        }
+        return environment.GetAt(depth, code[node + 3]);
+      }
+    }
+
+    //unreachable
+    return null;
+  }
+
+  //helpers
+  private Environment Acquire(int slots) {
+    if (depth >= pool.length) {
+      pool = Arrays.copyOf(pool, pool.length * 2);
+    }
+
+    Environment pooled = pool[depth];
+    if (pooled == null || pooled.Capacity() < slots) {
+      pooled = new Environment(environment, Math.max(slots, 8));
+      pool[depth] = pooled;
+      return pooled;
+    }
+
+    pooled.Reset(environment);
+    return pooled;
+  }
+}
@@ -0,0 +1,233 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//lowers a prepared AST into a FlatAst, once the Resolver and LoopHoister have annotated it
+class FlatLowerer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+  //members
+  private int[] code = new int[256];
+  private int count = 0;
+
+  private final List<Object> constants = new ArrayList<>();
+  private final Map<Object, Integer> constantIndexes = new HashMap<>();
+  private final List<String> names = new ArrayList<>();
+  private final Map<String, Integer> nameIndexes = new HashMap<>();
+  private int invariantCount = 0;
+
+  //wrapper functions
+  FlatAst Lower(List<Stmt> statements) {
+    int[] offsets = new int[statements.size()];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = count;
+      Lower(statements.get(i));
+    }
+
+    return new FlatAst(Arrays.copyOf(code, count), constants.toArray(), names.toArray(new String[0]), offsets, invariantCount);
+  }
+
+  //AST types
+  @Override
+  public Void Visit(Expr.Assign expr) {
+    Emit(Expr.ASSIGN);
+    Emit(Name(expr.name.Lexeme()));
+    Emit(expr.depth);
+    Emit(expr.slot);
+    Emit(expr.name.line);
+    Lower(expr.value);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Binary expr) {
+    Emit(Expr.BINARY);
+    Emit(expr.operator.type.ordinal());
+    Emit(expr.operator.line);
+    int rhs = Placeholder();
+    Lower(expr.lhs);
+    Patch(rhs);
+    Lower(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Grouping expr) {
+    Lower(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Invariant expr) {
+    Emit(Expr.INVARIANT);
+    Emit(expr.index);
+    invariantCount = Math.max(invariantCount, expr.index + 1);
+    Lower(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Literal expr) {
+    Emit(Expr.LITERAL);
+    Emit(Constant(expr.value));
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Logical expr) {
+    Emit(Expr.LOGICAL);
+    Emit(expr.operator.type == TokenType.OR ? 1 : 0);
+    int rhs = Placeholder();
+    Lower(expr.lhs);
+    Patch(rhs);
+    Lower(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Unary expr) {
+    Emit(Expr.UNARY);
+    Emit(expr.operator.type.ordinal());
+    Emit(expr.operator.line);
+    Lower(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Variable expr) {
+    Emit(Expr.VARIABLE);
+    Emit(Name(expr.name.Lexeme()));
+    Emit(expr.depth);
+    Emit(expr.slot);
+    Emit(expr.name.line);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Block stmt) {
+    Emit(Stmt.BLOCK);
+    Emit(stmt.slots);
+    Emit(stmt.statements.size());
+
+    int offsets = count;
+    for (int i = 0; i < stmt.statements.size(); i++) {
+      Placeholder();
+    }
+    for (Stmt statement : stmt.statements) {
+      Patch(offsets++);
+      Lower(statement);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Expression stmt) {
+    Emit(Stmt.EXPRESSION);
+    Lower(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.If stmt) {
+    Emit(Stmt.IF);
+    int thenBranch = Placeholder();
+    int elseBranch = Placeholder();
+
+    Lower(stmt.condition);
+    Patch(thenBranch);
+    Lower(stmt.thenBranch);
+
+    if (stmt.elseBranch != null) {
+      Patch(elseBranch);
+      Lower(stmt.elseBranch);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Print stmt) {
+    Emit(Stmt.PRINT);
+    Lower(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Var stmt) {
+    Emit(Stmt.VAR);
+    Emit(Name(stmt.name.Lexeme()));
+    Emit(stmt.slot);
+    int initializer = Placeholder();
+
+    if (stmt.initializer != null) {
+      Patch(initializer);
+      Lower(stmt.initializer);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.While stmt) {
+    Emit(Stmt.WHILE);
+    int body = Placeholder();
+
+    List<Expr.Invariant> invariants = stmt.invariants != null ? stmt.invariants : List.of();
+    Emit(invariants.size());
+    for (Expr.Invariant invariant : invariants) {
+      Emit(invariant.index);
+    }
+
+    Lower(stmt.condition);
+    Patch(body);
+    Lower(stmt.body);
+    return null;
+  }
+
+  //helpers
+  private void Lower(Stmt stmt) {
+    stmt.Accept(this);
+  }
+
+  private void Lower(Expr expr) {
+    expr.Accept(this);
+  }
+
+  private void Emit(int value) {
+    if (count == code.length) {
+      code = Arrays.copyOf(code, code.length * 2);
+    }
+    code[count++] = value;
+  }
+
+  //an offset to fill in with Patch(), -1 until then
+  private int Placeholder() {
+    Emit(-1);
+    return count - 1;
+  }
+
+  //point the placeholder at the next node
+  private void Patch(int placeholder) {
+    code[placeholder] = count;
+  }
+
+  private int Constant(Object value) {
+    Integer index = constantIndexes.get(value);
+    if (index == null) {
+      index = constants.size();
+      constants.add(value);
+      constantIndexes.put(value, index);
+    }
+    return index;
+  }
+
+  private int Name(String name) {
+    Integer index = nameIndexes.get(name);
+    if (index == null) {
+      index = names.size();
+      names.add(name);
+      nameIndexes.put(name, index);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,103 @@
+package com.krgamestudios.lox;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.file.Path;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//binary image of the globals a prelude leaves behind, so later runs can restore them instead of running it again
+//a CacheFile keyed by the prelude's hash, whose payload is a count of globals, then each one's name and value
+//every Lox value is nil, a boolean, a number or a string
+class HeapSnapshot {
+  private static final int MAGIC = 0x4A4C4F53; //"JLOS"
+  private static final int VERSION = 1;
+  static final String EXTENSION = ".jloxs";
+
+  //value tags
+  private static final byte NIL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte NUMBER = 2;
+  private static final byte STRING = 3;
+
+  private HeapSnapshot() {}
+
+  //beside the prelude, unless the command line says otherwise
+  static Path PathFor(Path prelude, Path snapshotPath) {
+    if (snapshotPath != null) {
+      return snapshotPath;
+    }
+    return prelude.resolveSibling(prelude.getFileName() + EXTENSION);
+  }
+
+  //returns null for a missing, stale or corrupt snapshot
+  static Map<String, Object> Load(Path path, byte[] hash) {
+    DataInputStream payload = CacheFile.Read(path, MAGIC, VERSION, 0, hash);
+    if (payload == null) return null;
+
+    try {
+      return ReadGlobals(payload);
+    }
+    catch(IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  //failing to write the snapshot only costs the next run the prelude
+  static void Store(Path path, byte[] hash, Map<String, Object> globals) {
+    CacheFile.Write(path, MAGIC, VERSION, 0, hash, out -> WriteGlobals(out, globals));
+  }
+
+  //payload
+  private static void WriteGlobals(DataOutputStream out, Map<String, Object> globals) throws IOException {
+    out.writeInt(globals.size());
+    for (Map.Entry<String, Object> entry : globals.entrySet()) {
+      CacheFile.WriteString(out, entry.getKey());
+      WriteValue(out, Rope.Flatten(entry.getValue()));
+    }
+  }
+
+  private static Map<String, Object> ReadGlobals(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count < 0) throw new IOException("Negative global count");
+
+    Map<String, Object> globals = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      String name = CacheFile.ReadString(in);
+      globals.put(name, ReadValue(in));
+    }
+    return globals;
+  }
+
+  private static void WriteValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NIL);
+    }
+    else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    }
+    else if (value instanceof Double) {
+      out.writeByte(NUMBER);
+      out.writeDouble((Double)value);
+    }
+    else {
+      out.writeByte(STRING);
+      CacheFile.WriteString(out, (String)value);
+    }
+  }
+
+  private static Object ReadValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch(tag) {
+      case NIL: return null;
+      case BOOLEAN: return in.readBoolean();
+      case NUMBER: return in.readDouble();
+      case STRING: return CacheFile.ReadString(in);
+    }
+    throw new IOException("Unknown value tag " + tag);
+  }
+}
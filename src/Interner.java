@@ -0,0 +1,96 @@
+package com.krgamestudios.lox;
+
+//identifier names, each stored once and numbered in the order they're first seen
+//lookups hash and compare the chars where they lie, so a name that's already known costs no allocation
+//not thread-safe; each lexer has its own
+final class Interner {
+  //members
+  private String[] names = new String[64]; //by id
+  private int[] hashes = new int[64]; //by id
+  private int count = 0;
+
+  private int[] table = new int[128]; //open addressing, holding id + 1, or 0 for empty
+
+  //the id for a name, adding it if it's new
+  int Id(CharSequence source, int start, int length) {
+    int hash = 0;
+    for (int i = start; i < start + length; i++) {
+      hash = 31 * hash + source.charAt(i);
+    }
+
+    int mask = table.length - 1;
+    for (int index = Spread(hash) & mask; ; index = (index + 1) & mask) {
+      int id = table[index] - 1;
+      if (id < 0) {
+        return Add(source.subSequence(start, start + length).toString(), hash, index);
+      }
+      if (hashes[id] == hash && names[id].length() == length && Equals(names[id], source, start)) {
+        return id;
+      }
+    }
+  }
+
+  String Name(int id) {
+    return names[id];
+  }
+
+  int Count() {
+    return count;
+  }
+
+  //forget every name; ids handed out before this are no longer valid
+  void Clear() {
+    names = new String[64];
+    hashes = new int[64];
+    table = new int[128];
+    count = 0;
+  }
+
+  //helpers
+  private int Add(String name, int hash, int index) {
+    if (count == names.length) {
+      String[] grownNames = new String[names.length * 2];
+      System.arraycopy(names, 0, grownNames, 0, count);
+      names = grownNames;
+
+      int[] grownHashes = new int[hashes.length * 2];
+      System.arraycopy(hashes, 0, grownHashes, 0, count);
+      hashes = grownHashes;
+    }
+
+    int id = count++;
+    names[id] = name;
+    hashes[id] = hash;
+    table[index] = id + 1;
+
+    //keep the table at most half full
+    if (count * 2 > table.length) {
+      Rehash();
+    }
+    return id;
+  }
+
+  private void Rehash() {
+    table = new int[table.length * 2];
+    int mask = table.length - 1;
+    for (int id = 0; id < count; id++) {
+      int index = Spread(hashes[id]) & mask;
+      while (table[index] != 0) {
+        index = (index + 1) & mask;
+      }
+      table[index] = id + 1;
+    }
+  }
+
+  //mix the high bits in, since the table index only uses the low ones
+  private static int Spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean Equals(String name, CharSequence source, int start) {
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != source.charAt(start + i)) return false;
+    }
+    return true;
+  }
+}
@@ -5,21 +5,61 @@ import java.util.List;
 import static com.krgamestudios.lox.TokenType.*;
 
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-  private Environment environment = new Environment();
+  private final Environment globals;
+  private Environment environment;
+
+  //block environments, one per nesting depth; nothing outlives its block, so a finished one can be reused
+  private Environment[] pool = new Environment[16];
+  private int depth = 0;
+
+  //cached loop invariants, by Expr.Invariant.index
+  private static final Object UNSET = new Object();
+  private Object[] invariants = new Object[0];
+  private final Context context;
+  private final OutputSink output;
+  private final Profiler profiler; //null unless profiling
+  private final Budget budget; //null unless limits are set
+  private final boolean jit; //compiled loops would hide their nodes from the profiler, and skip the budget's checks
+
+  Interpreter(Context context) {
+    this.context = context;
+    this.globals = context.globals;
+    this.environment = globals;
+    this.output = context.output;
+    this.profiler = context.profiler;
+    this.budget = Budget.For(context.options);
+    this.jit = context.options.useJit && profiler == null && budget == null;
+  }
 
   //wrapper functions
   void Interpret(List<Stmt> statements) {
+    if (budget != null) {
+      budget.Start();
+    }
+
     try {
       for (Stmt statement : statements) {
         Execute(statement);
       }
     }
     catch(RuntimeError error) {
-      Lox.RuntimeError(error);
+      //a runtime error skips the profiler's exits
+      if (profiler != null) {
+        profiler.Unwind();
+      }
+
+      //keep the output that came before the error in order with the report
+      output.Flush();
+      context.RuntimeError(error);
+    }
+    finally {
+      if (budget != null) {
+        budget.Stop();
+      }
     }
   }
 
-  private String Stringify(Object object) {
+  static String Stringify(Object object) {
     if (object == null) return "nil";
 
     //hack around java's ".0" for doubles
@@ -40,6 +80,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     try {
       this.environment = environment;
       for (Stmt statement : statements) {
+        if (budget != null) budget.Step(statement);
         Execute(statement);
       }
     }
@@ -52,7 +93,12 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   @Override
   public Object Visit(Expr.Assign expr) {
     Object value = Evaluate(expr.value);
-    environment.Assign(expr.name, value);
+    if (expr.depth < 0) {
+      globals.Assign(expr.name, value);
+    }
+    else {
+      environment.AssignAt(expr.depth, expr.slot, value);
+    }
     return value;
   }
 
@@ -66,6 +112,17 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return Evaluate(expr.expression);
   }
 
+  //computed once per entry to the loop that owns it, when it's first reached
+  @Override
+  public Object Visit(Expr.Invariant expr) {
+    Object value = invariants[expr.index];
+    if (value == UNSET) {
+      value = Evaluate(expr.expression);
+      invariants[expr.index] = value;
+    }
+    return value;
+  }
+
   @Override
   public Object Visit(Expr.Unary expr) {
     Object rhs = Evaluate(expr.rhs);
@@ -73,7 +130,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     //handle special cases
     switch(expr.operator.type) {
       case MINUS:
-        CheckNumberOperand(expr.operator, rhs); //distinct
+        CheckNumberOperand(expr.operator.line, rhs); //distinct
         return -(double)rhs;
       case BANG:
         return !IsTruthy(rhs);
@@ -85,10 +142,23 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Object Visit(Expr.Binary expr) {
-    Object lhs = Evaluate(expr.lhs);
-    Object rhs = Evaluate(expr.rhs);
+    Object result = expr.node.Execute(this, expr);
+
+    //the only values a script can grow without bound are strings
+    if (budget != null && expr.operator.type == PLUS && !(result instanceof Double)) {
+      budget.Allocate(Rope.Size(result), expr.operator.line);
+    }
+    return result;
+  }
 
-    switch (expr.operator.type) {
+  //the generic binary operation, used until a BinaryNode specializes
+  static Object ApplyBinary(Expr.Binary expr, Object lhs, Object rhs) {
+    return ApplyBinary(expr.operator.type, expr.operator.line, lhs, rhs);
+  }
+
+  //also used by the FlatInterpreter, which keeps operators as a type and a line
+  static Object ApplyBinary(TokenType operator, int line, Object lhs, Object rhs) {
+    switch (operator) {
       //equality operators
       case BANG_EQUAL: return !IsEqual(lhs, rhs);
 
@@ -96,41 +166,41 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
       //comparison operators
       case GREATER:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs > (double)rhs;
 
       case GREATER_EQUAL:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs >= (double)rhs;
 
       case LESS:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs < (double)rhs;
 
       case LESS_EQUAL:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs <= (double)rhs;
 
       //arithmetic operators
       case MINUS:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs - (double)rhs;
 
       case PLUS:
         if(lhs instanceof Double && rhs instanceof Double) {
           return (double)lhs + (double)rhs;
         }
-        if(lhs instanceof String && rhs instanceof String) {
-          return (String)lhs + (String)rhs;
+        if(Rope.IsString(lhs) && Rope.IsString(rhs)) {
+          return Rope.Concat(lhs, rhs);
         }
-        throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+        throw new RuntimeError(line, "Operands must be two numbers or two strings.");
 
       case SLASH:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs / (double)rhs;
 
       case STAR:
-        CheckNumberOperands(expr.operator, lhs, rhs);
+        CheckNumberOperands(line, lhs, rhs);
         return (double)lhs * (double)rhs;
     }
 
@@ -145,7 +215,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     if (expr.operator.type == TokenType.OR) {
       if (IsTruthy(lhs)) return lhs;
     }
-    if (!IsTruthy(lhs)) {
+    else if (!IsTruthy(lhs)) {
       return lhs;
     }
 
@@ -154,7 +224,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Object Visit(Expr.Variable expr) {
-    return environment.Get(expr.name);
+    if (expr.depth < 0) {
+      return globals.Get(expr.name);
+    }
+    return environment.GetAt(expr.depth, expr.slot);
   }
 
   @Override
@@ -163,13 +236,31 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     if (stmt.initializer != null) {
       value = Evaluate(stmt.initializer);
     }
-    environment.Define(stmt.name.lexeme, value);
+    if (stmt.slot < 0) {
+      globals.Define(stmt.name.Lexeme(), value);
+    }
+    else {
+      environment.DefineAt(stmt.slot, value);
+    }
     return null;
   }
 
   @Override
   public Void Visit(Stmt.While stmt) {
-    while(IsTruthy(Evaluate(stmt.condition))) {
+    if (stmt.invariants != null) {
+      for (Expr.Invariant invariant : stmt.invariants) {
+        if (invariant.index >= invariants.length) {
+          GrowInvariants(invariant.index);
+        }
+        invariants[invariant.index] = UNSET;
+      }
+    }
+
+    //once the loop is hot, its remaining iterations can run as JVM bytecode
+    for (;;) {
+      if (budget != null) budget.Step(stmt);
+      if (jit && CompiledLoop.Enter(stmt, environment, globals)) break;
+      if (!IsTruthy(Evaluate(stmt.condition))) break;
       Execute(stmt.body);
     }
     return null;
@@ -177,7 +268,22 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Void Visit(Stmt.Block stmt) {
-    ExecuteBlock(stmt.statements, new Environment(environment));
+    //the Resolver gave this block no scope, because it declares nothing
+    if (stmt.slots == 0) {
+      for (Stmt statement : stmt.statements) {
+        if (budget != null) budget.Step(statement);
+        Execute(statement);
+      }
+      return null;
+    }
+
+    depth++;
+    try {
+      ExecuteBlock(stmt.statements, Acquire(stmt.slots));
+    }
+    finally {
+      depth--;
+    }
     return null;
   }
 
@@ -192,8 +298,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     if (IsTruthy(Evaluate(stmt.condition))) {
       Execute(stmt.thenBranch);
     }
-    else if (stmt.thenBranch != null) {
-      Execute(stmt.thenBranch);
+    else if (stmt.elseBranch != null) {
+      Execute(stmt.elseBranch);
     }
     return null;
   }
@@ -201,38 +307,80 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   @Override
   public Void Visit(Stmt.Print stmt) {
     Object value = Evaluate(stmt.expression);
-    System.out.println(Stringify(value));
+    output.Print(Stringify(value));
     return null;
   }
 
   //helpers
-  private void Execute(Stmt stmt) {
+  private void GrowInvariants(int index) {
+    Object[] grown = new Object[Math.max(index + 1, invariants.length * 2)];
+    System.arraycopy(invariants, 0, grown, 0, invariants.length);
+    invariants = grown;
+  }
+
+  private Environment Acquire(int slots) {
+    if (depth == pool.length) {
+      Environment[] grown = new Environment[pool.length * 2];
+      System.arraycopy(pool, 0, grown, 0, pool.length);
+      pool = grown;
+    }
+
+    Environment pooled = pool[depth];
+    if (pooled == null || pooled.Capacity() < slots) {
+      pooled = new Environment(environment, Math.max(slots, 8));
+      pool[depth] = pooled;
+      return pooled;
+    }
+
+    pooled.Reset(environment);
+    return pooled;
+  }
+
+  void Execute(Stmt stmt) {
+    if (profiler == null) {
+      stmt.Accept(this);
+      return;
+    }
+
+    profiler.Enter(stmt);
     stmt.Accept(this);
+    profiler.Exit();
   }
 
-  private Object Evaluate(Expr expr) {
-    return expr.Accept(this);
+  //numeric BinaryNodes evaluate their numeric children directly, so those show up as part of the parent
+  Object Evaluate(Expr expr) {
+    if (profiler == null) {
+      return expr.Accept(this);
+    }
+
+    profiler.Enter(expr);
+    Object value = expr.Accept(this);
+    profiler.Exit();
+    return value;
   }
 
-  private boolean IsTruthy(Object object) {
+  static boolean IsTruthy(Object object) {
     if (object == null) return false;
     if (object instanceof Boolean) return (boolean)object;
     return true;
   }
 
-  private boolean IsEqual(Object a, Object b) {
+  static boolean IsEqual(Object a, Object b) {
+    a = Rope.Flatten(a);
+    b = Rope.Flatten(b);
+
     if (a == null && b == null) return true;
     if (a == null) return false;
     return a.equals(b);
   }
 
-  private void CheckNumberOperand(Token operator, Object rhs) {
+  static void CheckNumberOperand(int line, Object rhs) {
     if (rhs instanceof Double) return;
-    throw new RuntimeError(operator, "Operand must be a number.");
+    throw new RuntimeError(line, "Operand must be a number.");
   }
 
-  private void CheckNumberOperands(Token operator, Object lhs, Object rhs) {
+  private static void CheckNumberOperands(int line, Object lhs, Object rhs) {
     if (lhs instanceof Double && rhs instanceof Double) return;
-    throw new RuntimeError(operator, "Operands must be a number.");
+    throw new RuntimeError(line, "Operands must be a number.");
   }
 }
@@ -0,0 +1,111 @@
+package com.krgamestudios.lox;
+
+import static com.krgamestudios.lox.TokenType.*;
+
+//recognizes reserved words straight from the source, without building a String first
+//the length and first char (and the second, where two keywords share both) pick the only keyword it could be,
+//and everything after the first char is compared in place
+final class Keywords {
+  private static final String[] TEXT = new String[TokenType.values().length];
+
+  static {
+    //define the reserved words
+    TEXT[AND.ordinal()]    = "and";
+    TEXT[CLASS.ordinal()]  = "class";
+    TEXT[ELSE.ordinal()]   = "else";
+    TEXT[FALSE.ordinal()]  = "false";
+    TEXT[FOR.ordinal()]    = "for";
+    TEXT[FUN.ordinal()]    = "fun";
+    TEXT[IF.ordinal()]     = "if";
+    TEXT[NIL.ordinal()]    = "nil";
+    TEXT[OR.ordinal()]     = "or";
+    TEXT[PRINT.ordinal()]  = "print";
+    TEXT[RETURN.ordinal()] = "return";
+    TEXT[SUPER.ordinal()]  = "super";
+    TEXT[THIS.ordinal()]   = "this";
+    TEXT[TRUE.ordinal()]   = "true";
+    TEXT[VAR.ordinal()]    = "var";
+    TEXT[WHILE.ordinal()]  = "while";
+
+    //and punctuation, so its tokens can share a lexeme too
+    TEXT[LEFT_PAREN.ordinal()]    = "(";
+    TEXT[RIGHT_PAREN.ordinal()]   = ")";
+    TEXT[LEFT_BRACE.ordinal()]    = "{";
+    TEXT[RIGHT_BRACE.ordinal()]   = "}";
+    TEXT[COMMA.ordinal()]         = ",";
+    TEXT[DOT.ordinal()]           = ".";
+    TEXT[MINUS.ordinal()]         = "-";
+    TEXT[PLUS.ordinal()]          = "+";
+    TEXT[SEMICOLON.ordinal()]     = ";";
+    TEXT[SLASH.ordinal()]         = "/";
+    TEXT[STAR.ordinal()]          = "*";
+    TEXT[BANG.ordinal()]          = "!";
+    TEXT[BANG_EQUAL.ordinal()]    = "!=";
+    TEXT[EQUAL.ordinal()]         = "=";
+    TEXT[EQUAL_EQUAL.ordinal()]   = "==";
+    TEXT[GREATER.ordinal()]       = ">";
+    TEXT[GREATER_EQUAL.ordinal()] = ">=";
+    TEXT[LESS.ordinal()]          = "<";
+    TEXT[LESS_EQUAL.ordinal()]    = "<=";
+  }
+
+  private Keywords() {}
+
+  //the keyword type, or IDENTIFIER
+  static TokenType Match(CharSequence source, int start, int length) {
+    if (length < 2) return IDENTIFIER;
+
+    TokenType type = Candidate(length, source.charAt(start), source.charAt(start + 1));
+    if (type == IDENTIFIER) return type;
+
+    String text = TEXT[type.ordinal()];
+    for (int i = 1; i < length; i++) {
+      if (source.charAt(start + i) != text.charAt(i)) return IDENTIFIER;
+    }
+    return type;
+  }
+
+  //the fixed spelling of a keyword or punctuation type, or null for anything else
+  static String Text(TokenType type) {
+    return TEXT[type.ordinal()];
+  }
+
+  //helpers
+  private static TokenType Candidate(int length, char first, char second) {
+    switch(length) {
+      case 2:
+        if (first == 'i') return IF;
+        if (first == 'o') return OR;
+        break;
+
+      case 3:
+        switch(first) {
+          case 'a': return AND;
+          case 'f': return second == 'o' ? FOR : FUN;
+          case 'n': return NIL;
+          case 'v': return VAR;
+        }
+        break;
+
+      case 4:
+        if (first == 'e') return ELSE;
+        if (first == 't') return second == 'h' ? THIS : TRUE;
+        break;
+
+      case 5:
+        switch(first) {
+          case 'c': return CLASS;
+          case 'f': return FALSE;
+          case 'p': return PRINT;
+          case 's': return SUPER;
+          case 'w': return WHILE;
+        }
+        break;
+
+      case 6:
+        if (first == 'r') return RETURN;
+        break;
+    }
+    return IDENTIFIER;
+  }
+}
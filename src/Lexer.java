@@ -1,51 +1,73 @@
 package com.krgamestudios.lox;
 
+import java.io.Reader;
+
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static com.krgamestudios.lox.TokenType.*;
 
+//scans a LexerInput, either all at once from a String, or one token at a time for a StreamLexer
 class Lexer {
   //members
-  private final String source;
-  private final List<Token> tokens = new ArrayList<>();
+  private final LexerInput input;
+  private final String source; //null when streaming, since only part of the input is kept
+  private final Context context;
+  private TokenBuffer buffer = null;
+  private Token scanned = null;
+  private final Interner names = new Interner();
+  private final NumberLiterals numbers = new NumberLiterals();
+
+  //a stream's tables are emptied once they hold this many entries, so they don't grow with the length of the file
+  private static final int STREAM_TABLE_LIMIT = 4096;
 
   private int start = 0;
   private int current = 0;
   private int line = 1;
 
-  private static final Map<String, TokenType> keywords;
-
-  static {
-    //define the reserved words
-    keywords = new HashMap<>();
-    keywords.put("and",		AND);
-    keywords.put("class",	CLASS);
-    keywords.put("else",	ELSE);
-    keywords.put("false",	FALSE);
-    keywords.put("for",		FOR);
-    keywords.put("fun",		FUN);
-    keywords.put("if",		IF);
-    keywords.put("nil",		NIL);
-    keywords.put("or",		OR);
-    keywords.put("print",	PRINT);
-    keywords.put("return",	RETURN);
-    keywords.put("super",	SUPER);
-    keywords.put("this",	THIS);
-    keywords.put("true",	TRUE);
-    keywords.put("var",		VAR);
-    keywords.put("while",	WHILE);
-  }
-
   //methods
-  Lexer(String source) {
+  Lexer(String source, Context context) {
+    this.input = new LexerInput.FromString(source);
     this.source = source;
+    this.context = context;
+  }
+
+  Lexer(Reader reader, Context context) {
+    this.input = new LexerInput.FromReader(reader);
+    this.source = null;
+    this.context = context;
   }
 
   //core methods
   List<Token> ScanTokens() {
+    List<Token> tokens = new ArrayList<>();
+    for (;;) {
+      Token token = Next();
+      tokens.add(token);
+      if (token.type == EOF) return tokens;
+    }
+  }
+
+  //the next token, and EOF from then on once the input is exhausted
+  Token Next() {
+    scanned = null;
+    while(scanned == null) {
+      if (IsAtEnd()) {
+        return new Token(EOF, "", null, line);
+      }
+
+      //We are at the beginning of the next lexeme, and nothing before it is needed again
+      start = current;
+      input.Release(start);
+      ScanToken();
+    }
+    return scanned;
+  }
+
+  //same as ScanTokens(), but into a compact TokenBuffer
+  TokenBuffer ScanBuffer() {
+    buffer = new TokenBuffer(source, names);
+
     while(!IsAtEnd()) {
       //We are at the beginning of the next lexeme
       start = current;
@@ -53,8 +75,8 @@ class Lexer {
     }
 
     //Finally
-    tokens.add(new Token(EOF, "", null, line));
-    return tokens;
+    buffer.Add(EOF, current, 0, null, line);
+    return buffer;
   }
 
   private void ScanToken() {
@@ -81,8 +103,10 @@ class Lexer {
       //hamdle slash and comments
       case '/':
         if (Match('/')) {
-          while(Peek() != '\n' && !IsAtEnd())
+          while(Peek() != '\n' && !IsAtEnd()) {
             Advance();
+            input.Release(current); //don't hold onto comment text
+          }
         }
         else {
           AddToken(SLASH);
@@ -112,7 +136,7 @@ class Lexer {
           Identifier();
         }
         else {
-          Lox.Error(line, "Unexpected character '" + c + "'");
+          context.Error(line, "Unexpected character '" + c + "'");
         }
       break;
     }
@@ -129,7 +153,7 @@ class Lexer {
 
     //unterminated string
     if (IsAtEnd()) {
-      Lox.Error(line, "Unterminated string");
+      context.Error(line, "Unterminated string");
       return;
     }
 
@@ -137,7 +161,7 @@ class Lexer {
     Advance();
 
     //trim the "
-    String value = source.substring(start + 1, current - 1); //TODO: unescape characters if supported
+    String value = input.subSequence(start + 1, current - 1).toString(); //TODO: unescape characters if supported
     AddToken(STRING, value);
   }
 
@@ -152,46 +176,60 @@ class Lexer {
         Advance();
     }
 
-    AddToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+    if (source == null && numbers.Count() >= STREAM_TABLE_LIMIT) {
+      numbers.Clear();
+    }
+    AddToken(NUMBER, numbers.Box(NumberLiterals.Parse(input, start, current)));
   }
 
   private void Identifier() {
     while(IsAlNum( Peek() ))
       Advance();
 
-    //check for reserved words
-    String text = source.substring(start, current);
-
-    TokenType type = keywords.get(text);
-    if (type == null) type = IDENTIFIER;
+    //check for reserved words, in place
+    TokenType type = Keywords.Match(input, start, current - start);
+    if (type != IDENTIFIER) {
+      AddToken(type);
+      return;
+    }
 
-    AddToken(type);
+    //every occurrence of a name shares one String, or in a stream, every occurrence since the table was last emptied
+    if (source == null && names.Count() >= STREAM_TABLE_LIMIT) {
+      names.Clear();
+    }
+    int id = names.Id(input, start, current - start);
+    if (buffer != null) {
+      buffer.AddIdentifier(start, current - start, id, line);
+      return;
+    }
+    scanned = new Token(IDENTIFIER, names.Name(id), null, line);
   }
 
   //helpers
   private boolean IsAtEnd() {
-    return current >= source.length();
+    return !input.Has(current);
   }
 
   private char Peek() {
     if (IsAtEnd()) return '\0';
-    return source.charAt(current);
+    return input.charAt(current);
   }
 
   private char PeekNext() {
-    if (current + 1 >= source.length()) return '\0';
-    return source.charAt(current + 1);
+    if (!input.Has(current + 1)) return '\0';
+    return input.charAt(current + 1);
   }
 
+  //only called once Has() has been checked for the current char
   private char Advance() {
     current++;
-    return source.charAt(current-1);
+    return input.charAt(current-1);
   }
 
   private boolean Match(char expected) {
     //Conditional Advance()
     if (IsAtEnd()) return false;
-    if (source.charAt(current) != expected) return false;
+    if (input.charAt(current) != expected) return false;
     current++;
     return true;
   }
@@ -216,7 +254,22 @@ class Lexer {
   }
 
   private void AddToken(TokenType type, Object literal) {
-    String text = source.substring(start, current);
-    tokens.add(new Token(type, text, literal, line));
+    if (buffer != null) {
+      buffer.Add(type, start, current - start, literal, line);
+      return;
+    }
+
+    //punctuation and keywords share their spelling, and everything else reads it from the source if it's ever needed
+    //a streamed input's window is reused, so its tokens copy their text out
+    String text = Keywords.Text(type);
+    if (text != null) {
+      scanned = new Token(type, text, literal, line);
+    }
+    else if (source != null) {
+      scanned = new Token(type, source, start, current - start, literal, line);
+    }
+    else {
+      scanned = new Token(type, input.subSequence(start, current).toString(), literal, line);
+    }
   }
 }
@@ -0,0 +1,125 @@
+package com.krgamestudios.lox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+//the characters a Lexer scans, indexed from the start of the input
+//charAt() is only valid for indexes that Has() has answered true for, and that haven't been released since
+interface LexerInput extends CharSequence {
+  boolean Has(int index); //false past the end of the input
+  void Release(int index); //nothing before index will be read again
+
+  //the whole input is in memory already
+  static class FromString implements LexerInput {
+    private final String source;
+
+    FromString(String source) {
+      this.source = source;
+    }
+
+    @Override
+    public boolean Has(int index) {
+      return index < source.length();
+    }
+
+    @Override
+    public void Release(int index) {
+      //nothing to do
+    }
+
+    @Override
+    public char charAt(int index) {
+      return source.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return source.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return source.substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return source;
+    }
+  }
+
+  //reads incrementally, keeping only the window from the last release to what's been read so far
+  static class FromReader implements LexerInput {
+    private final Reader reader;
+    private char[] buffer = new char[8192];
+    private int offset = 0; //the index of buffer[0]
+    private int limit = 0;
+    private int released = 0;
+    private boolean exhausted = false;
+
+    FromReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean Has(int index) {
+      while(index >= offset + limit) {
+        if (!Fill()) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void Release(int index) {
+      released = index;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return buffer[index - offset];
+    }
+
+    //as much as has been read so far
+    @Override
+    public int length() {
+      return offset + limit;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new String(buffer, start - offset, end - start);
+    }
+
+    //discard what's been released, growing only for tokens longer than the buffer
+    private boolean Fill() {
+      if (exhausted) return false;
+
+      int discard = released - offset;
+      if (discard > 0) {
+        System.arraycopy(buffer, discard, buffer, 0, limit - discard);
+        limit -= discard;
+        offset = released;
+      }
+      if (limit == buffer.length) {
+        char[] grown = new char[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, limit);
+        buffer = grown;
+      }
+
+      try {
+        int count = reader.read(buffer, limit, buffer.length - limit);
+        if (count < 0) {
+          exhausted = true;
+          reader.close();
+          return false;
+        }
+        limit += count;
+        return true;
+      }
+      catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
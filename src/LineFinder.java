@@ -0,0 +1,90 @@
+package com.krgamestudios.lox;
+
+//finds the source line a node starts on, from the first token it holds
+//nodes without a token of their own (literals, blocks) give -1, and callers fall back to the parent's line
+class LineFinder implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+  static final LineFinder INSTANCE = new LineFinder();
+
+  //wrapper functions
+  static int Find(Stmt stmt) {
+    return stmt.Accept(INSTANCE);
+  }
+
+  static int Find(Expr expr) {
+    return expr.Accept(INSTANCE);
+  }
+
+  //AST types
+  @Override
+  public Integer Visit(Expr.Assign expr) {
+    return expr.name.line;
+  }
+
+  @Override
+  public Integer Visit(Expr.Binary expr) {
+    int line = Find(expr.lhs);
+    return line >= 0 ? line : expr.operator.line;
+  }
+
+  @Override
+  public Integer Visit(Expr.Grouping expr) {
+    return Find(expr.expression);
+  }
+
+  @Override
+  public Integer Visit(Expr.Invariant expr) {
+    return Find(expr.expression);
+  }
+
+  @Override
+  public Integer Visit(Expr.Literal expr) {
+    return -1;
+  }
+
+  @Override
+  public Integer Visit(Expr.Logical expr) {
+    int line = Find(expr.lhs);
+    return line >= 0 ? line : expr.operator.line;
+  }
+
+  @Override
+  public Integer Visit(Expr.Unary expr) {
+    return expr.operator.line;
+  }
+
+  @Override
+  public Integer Visit(Expr.Variable expr) {
+    return expr.name.line;
+  }
+
+  @Override
+  public Integer Visit(Stmt.Block stmt) {
+    //a block belongs to whatever opened it, not to the first statement inside it
+    return -1;
+  }
+
+  @Override
+  public Integer Visit(Stmt.Expression stmt) {
+    return Find(stmt.expression);
+  }
+
+  @Override
+  public Integer Visit(Stmt.If stmt) {
+    return Find(stmt.condition);
+  }
+
+  @Override
+  public Integer Visit(Stmt.Print stmt) {
+    return Find(stmt.expression);
+  }
+
+  @Override
+  public Integer Visit(Stmt.Var stmt) {
+    return stmt.name.line;
+  }
+
+  @Override
+  public Integer Visit(Stmt.While stmt) {
+    return stmt.keyword.line;
+  }
+}
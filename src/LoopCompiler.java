@@ -0,0 +1,690 @@
+package com.krgamestudios.lox;
+
+import java.io.ByteArrayOutputStream;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//translates a hot while loop into a static method of a hidden class: void Run(double[] numbers, boolean[] booleans)
+//only loops over numbers and booleans are handled; anything else (print, strings, nil, mixed types) leaves the loop to the tree-walker
+//every type is known when the code is generated, so the generated code can't fail at runtime the way the interpreter can
+//the class file is version 49, which the JVM verifies by type inference, so no stack map frames are needed
+class LoopCompiler implements Expr.Visitor<LoopCompiler.Type>, Stmt.Visitor<Void> {
+  enum Type { NUMBER, BOOLEAN }
+
+  //thrown for anything the compiler doesn't handle
+  private static class Unsupported extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Unsupported() {
+      super(null, null, false, false);
+    }
+  }
+
+  //a local declared inside the loop: the JVM local it lives in, and its type
+  private static class Local {
+    final int index;
+    final Type type;
+
+    Local(int index, Type type) {
+      this.index = index;
+      this.type = type;
+    }
+  }
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType RUN_TYPE = MethodType.methodType(void.class, double[].class, boolean[].class);
+
+  //members
+  private final Environment environment;
+  private final Environment globals;
+
+  private final ConstantPool pool = new ConstantPool();
+  private final Code code = new Code();
+
+  //variables from outside the loop, keyed by global name or "depth:slot"
+  private final Map<String, CompiledLoop.Variable> outer = new HashMap<>();
+  private final Map<CompiledLoop.Variable, Integer> outerLocals = new HashMap<>();
+  private int numberCount = 0;
+  private int booleanCount = 0;
+
+  //one map of slot -> Local per environment-creating block inside the loop, innermost last
+  private final List<Map<Integer, Local>> scopes = new ArrayList<>();
+  private int nextLocal = 2; //after the two array parameters
+
+  private LoopCompiler(Environment environment, Environment globals) {
+    this.environment = environment;
+    this.globals = globals;
+  }
+
+  //wrapper functions
+  static CompiledLoop Compile(Stmt.While stmt, Environment environment, Environment globals) {
+    try {
+      return new LoopCompiler(environment, globals).CompileLoop(stmt);
+    }
+    catch(Unsupported | ReflectiveOperationException | LinkageError e) {
+      return CompiledLoop.UNSUPPORTED;
+    }
+  }
+
+  private CompiledLoop CompileLoop(Stmt.While stmt) throws ReflectiveOperationException {
+    //the loop goes first, so every outer variable is known when the prologue is written
+    Emit(stmt);
+
+    Code prologue = new Code();
+    Code epilogue = new Code();
+    CompiledLoop.Variable[] variables = outer.values().toArray(new CompiledLoop.Variable[0]);
+
+    for (CompiledLoop.Variable variable : variables) {
+      int local = outerLocals.get(variable);
+      if (variable.number) {
+        prologue.Op(Op.ALOAD_0, 1);
+        prologue.Int(variable.index);
+        prologue.Op(Op.DALOAD, -1);
+        prologue.Local(Op.DSTORE, local, -2);
+      }
+      else {
+        prologue.Op(Op.ALOAD_1, 1);
+        prologue.Int(variable.index);
+        prologue.Op(Op.BALOAD, -1);
+        prologue.Local(Op.ISTORE, local, -1);
+      }
+
+      if (!variable.assigned) continue;
+
+      if (variable.number) {
+        epilogue.Op(Op.ALOAD_0, 1);
+        epilogue.Int(variable.index);
+        epilogue.Local(Op.DLOAD, local, 2);
+        epilogue.Op(Op.DASTORE, -4);
+      }
+      else {
+        epilogue.Op(Op.ALOAD_1, 1);
+        epilogue.Int(variable.index);
+        epilogue.Local(Op.ILOAD, local, 1);
+        epilogue.Op(Op.BASTORE, -3);
+      }
+    }
+    epilogue.Op(Op.RETURN, 0);
+
+    byte[] bytes = ClassFile(prologue, epilogue);
+    Class<?> hidden = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+    MethodHandle handle = LOOKUP.findStatic(hidden, "Run", RUN_TYPE);
+
+    return new CompiledLoop(handle, variables, numberCount, booleanCount);
+  }
+
+  //AST types
+  @Override
+  public Type Visit(Expr.Assign expr) {
+    Type type = Emit(expr.value);
+    if (type != TypeOf(expr.name, expr.depth, expr.slot)) throw new Unsupported();
+
+    code.Op(type == Type.NUMBER ? Op.DUP2 : Op.DUP, Size(type));
+    Store(expr.name, expr.depth, expr.slot, type);
+    return type;
+  }
+
+  @Override
+  public Type Visit(Expr.Binary expr) {
+    Type lhs = Emit(expr.lhs);
+    Type rhs = Emit(expr.rhs);
+
+    switch(expr.operator.type) {
+      case PLUS: return Arithmetic(lhs, rhs, Op.DADD);
+      case MINUS: return Arithmetic(lhs, rhs, Op.DSUB);
+      case STAR: return Arithmetic(lhs, rhs, Op.DMUL);
+      case SLASH: return Arithmetic(lhs, rhs, Op.DDIV);
+
+      //NaN compares false either way, as in Java
+      case GREATER: return Comparison(lhs, rhs, Op.DCMPL, Op.IFLE);
+      case GREATER_EQUAL: return Comparison(lhs, rhs, Op.DCMPL, Op.IFLT);
+      case LESS: return Comparison(lhs, rhs, Op.DCMPG, Op.IFGE);
+      case LESS_EQUAL: return Comparison(lhs, rhs, Op.DCMPG, Op.IFGT);
+
+      case EQUAL_EQUAL: return Equality(lhs, rhs, true);
+      case BANG_EQUAL: return Equality(lhs, rhs, false);
+    }
+    throw new Unsupported();
+  }
+
+  @Override
+  public Type Visit(Expr.Grouping expr) {
+    return Emit(expr.expression);
+  }
+
+  //recomputed each time; HotSpot hoists it again if it's worth it
+  @Override
+  public Type Visit(Expr.Invariant expr) {
+    return Emit(expr.expression);
+  }
+
+  @Override
+  public Type Visit(Expr.Literal expr) {
+    if (expr.value instanceof Double) {
+      double value = (double)expr.value;
+      if (Double.doubleToRawLongBits(value) == 0L) {
+        code.Op(Op.DCONST_0, 2);
+      }
+      else if (value == 1.0) {
+        code.Op(Op.DCONST_1, 2);
+      }
+      else {
+        code.Op(Op.LDC2_W, 2);
+        code.Short(pool.Double(value));
+      }
+      return Type.NUMBER;
+    }
+    if (expr.value instanceof Boolean) {
+      code.Op((boolean)expr.value ? Op.ICONST_1 : Op.ICONST_0, 1);
+      return Type.BOOLEAN;
+    }
+    throw new Unsupported();
+  }
+
+  //only between booleans, where the result is a boolean too
+  @Override
+  public Type Visit(Expr.Logical expr) {
+    if (Emit(expr.lhs) != Type.BOOLEAN) throw new Unsupported();
+
+    code.Op(Op.DUP, 1);
+    int end = code.Jump(expr.operator.type == TokenType.OR ? Op.IFNE : Op.IFEQ, -1);
+    code.Op(Op.POP, -1);
+
+    if (Emit(expr.rhs) != Type.BOOLEAN) throw new Unsupported();
+    code.Land(end);
+    return Type.BOOLEAN;
+  }
+
+  @Override
+  public Type Visit(Expr.Unary expr) {
+    Type type = Emit(expr.rhs);
+
+    switch(expr.operator.type) {
+      case MINUS:
+        if (type != Type.NUMBER) throw new Unsupported();
+        code.Op(Op.DNEG, 0);
+        return Type.NUMBER;
+
+      case BANG:
+        //numbers are always truthy
+        if (type == Type.NUMBER) {
+          code.Op(Op.POP2, -2);
+          code.Op(Op.ICONST_0, 1);
+        }
+        else {
+          code.Op(Op.ICONST_1, 1);
+          code.Op(Op.IXOR, -1);
+        }
+        return Type.BOOLEAN;
+    }
+    throw new Unsupported();
+  }
+
+  @Override
+  public Type Visit(Expr.Variable expr) {
+    Type type = TypeOf(expr.name, expr.depth, expr.slot);
+    Load(expr.name, expr.depth, expr.slot, type);
+    return type;
+  }
+
+  @Override
+  public Void Visit(Stmt.Block stmt) {
+    //blocks the Resolver gave no scope create no environment, so they don't count towards depths
+    if (stmt.slots > 0) {
+      scopes.add(new HashMap<>());
+    }
+
+    for (Stmt statement : stmt.statements) {
+      Emit(statement);
+    }
+
+    if (stmt.slots > 0) {
+      scopes.remove(scopes.size() - 1);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Expression stmt) {
+    Type type = Emit(stmt.expression);
+    code.Op(type == Type.NUMBER ? Op.POP2 : Op.POP, -Size(type));
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.If stmt) {
+    int otherwise = Condition(stmt.condition);
+    Emit(stmt.thenBranch);
+
+    if (stmt.elseBranch == null) {
+      if (otherwise >= 0) code.Land(otherwise);
+      return null;
+    }
+
+    int end = code.Jump(Op.GOTO, 0);
+    if (otherwise >= 0) code.Land(otherwise);
+    Emit(stmt.elseBranch);
+    code.Land(end);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Print stmt) {
+    throw new Unsupported();
+  }
+
+  @Override
+  public Void Visit(Stmt.Var stmt) {
+    //a declaration without an initializer holds nil
+    if (stmt.initializer == null || stmt.slot < 0 || scopes.isEmpty()) throw new Unsupported();
+
+    Type type = Emit(stmt.initializer);
+
+    //redeclaring a name within the same block reuses its slot, and must keep its type
+    Map<Integer, Local> scope = scopes.get(scopes.size() - 1);
+    Local local = scope.get(stmt.slot);
+    if (local == null) {
+      local = new Local(nextLocal, type);
+      nextLocal += Size(type);
+      scope.put(stmt.slot, local);
+    }
+    else if (local.type != type) {
+      throw new Unsupported();
+    }
+
+    code.Local(type == Type.NUMBER ? Op.DSTORE : Op.ISTORE, local.index, -Size(type));
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.While stmt) {
+    int start = code.Position();
+    int exit = Condition(stmt.condition);
+    Emit(stmt.body);
+    code.JumpBack(start);
+    if (exit >= 0) code.Land(exit);
+    return null;
+  }
+
+  //helpers
+  private void Emit(Stmt stmt) {
+    stmt.Accept(this);
+  }
+
+  private Type Emit(Expr expr) {
+    return expr.Accept(this);
+  }
+
+  //leaves nothing on the stack, and returns the jump to patch to where the condition is false, or -1 if it can't be
+  private int Condition(Expr condition) {
+    Type type = Emit(condition);
+    if (type == Type.NUMBER) {
+      code.Op(Op.POP2, -2);
+      return -1;
+    }
+    return code.Jump(Op.IFEQ, -1);
+  }
+
+  private Type Arithmetic(Type lhs, Type rhs, byte op) {
+    if (lhs != Type.NUMBER || rhs != Type.NUMBER) throw new Unsupported();
+    code.Op(op, -2);
+    return Type.NUMBER;
+  }
+
+  private Type Comparison(Type lhs, Type rhs, byte compare, byte jumpIfFalse) {
+    if (lhs != Type.NUMBER || rhs != Type.NUMBER) throw new Unsupported();
+    code.Op(compare, -3);
+    return Materialize(jumpIfFalse, -1);
+  }
+
+  //numbers are equal as Double.equals() decides, so NaN equals NaN and 0 doesn't equal -0
+  private Type Equality(Type lhs, Type rhs, boolean equal) {
+    if (lhs != rhs) throw new Unsupported();
+
+    if (lhs == Type.NUMBER) {
+      //set the rhs aside while the lhs is converted, so the two sets of bits end up in order
+      int temporary = nextLocal;
+      nextLocal += 2;
+      code.Local(Op.DSTORE, temporary, -2);
+      code.Op(Op.INVOKESTATIC, 0);
+      code.Short(pool.DoubleToLongBits());
+      code.Local(Op.DLOAD, temporary, 2);
+      code.Op(Op.INVOKESTATIC, 0);
+      code.Short(pool.DoubleToLongBits());
+      code.Op(Op.LCMP, -3);
+      return Materialize(equal ? Op.IFNE : Op.IFEQ, -1);
+    }
+
+    return Materialize(equal ? Op.IF_ICMPNE : Op.IF_ICMPEQ, -2);
+  }
+
+  //turn a conditional jump into a 0 or 1 on the stack
+  private Type Materialize(byte jumpIfFalse, int popped) {
+    int otherwise = code.Jump(jumpIfFalse, popped);
+    code.Op(Op.ICONST_1, 1);
+    int end = code.Jump(Op.GOTO, 0);
+    code.Adjust(-1);
+    code.Land(otherwise);
+    code.Op(Op.ICONST_0, 1);
+    code.Land(end);
+    return Type.BOOLEAN;
+  }
+
+  //variables, either locals declared inside the loop or ones from outside it
+  private Local Inner(int depth, int slot) {
+    if (depth < 0 || depth >= scopes.size()) return null;
+    Local local = scopes.get(scopes.size() - 1 - depth).get(slot);
+    if (local == null) throw new Unsupported();
+    return local;
+  }
+
+  private CompiledLoop.Variable Outer(Token name, int depth, int slot) {
+    int outerDepth = depth < 0 ? -1 : depth - scopes.size();
+    String key = outerDepth < 0 ? name.Lexeme() : outerDepth + ":" + slot;
+
+    CompiledLoop.Variable variable = outer.get(key);
+    if (variable != null) return variable;
+
+    //the type is whatever the variable holds now; CompiledLoop.Run() checks it again on every entry
+    Object value;
+    try {
+      value = outerDepth < 0 ? globals.Get(name) : environment.GetAt(outerDepth, slot);
+    }
+    catch(RuntimeError error) {
+      throw new Unsupported();
+    }
+
+    if (value instanceof Double) {
+      variable = new CompiledLoop.Variable(name, outerDepth, slot, true, numberCount++);
+      outerLocals.put(variable, nextLocal);
+      nextLocal += 2;
+    }
+    else if (value instanceof Boolean) {
+      variable = new CompiledLoop.Variable(name, outerDepth, slot, false, booleanCount++);
+      outerLocals.put(variable, nextLocal);
+      nextLocal += 1;
+    }
+    else {
+      throw new Unsupported();
+    }
+
+    outer.put(key, variable);
+    return variable;
+  }
+
+  private Type TypeOf(Token name, int depth, int slot) {
+    Local local = Inner(depth, slot);
+    if (local != null) return local.type;
+    return Outer(name, depth, slot).number ? Type.NUMBER : Type.BOOLEAN;
+  }
+
+  private void Load(Token name, int depth, int slot, Type type) {
+    Local local = Inner(depth, slot);
+    int index = local != null ? local.index : outerLocals.get(Outer(name, depth, slot));
+    code.Local(type == Type.NUMBER ? Op.DLOAD : Op.ILOAD, index, Size(type));
+  }
+
+  private void Store(Token name, int depth, int slot, Type type) {
+    Local local = Inner(depth, slot);
+    int index;
+    if (local != null) {
+      index = local.index;
+    }
+    else {
+      CompiledLoop.Variable variable = Outer(name, depth, slot);
+      variable.assigned = true;
+      index = outerLocals.get(variable);
+    }
+    code.Local(type == Type.NUMBER ? Op.DSTORE : Op.ISTORE, index, -Size(type));
+  }
+
+  private static int Size(Type type) {
+    return type == Type.NUMBER ? 2 : 1;
+  }
+
+  //the class file around the generated method
+  private byte[] ClassFile(Code prologue, Code epilogue) {
+    int thisClass = pool.Class("com/krgamestudios/lox/CompiledLoop$Generated");
+    int superClass = pool.Class("java/lang/Object");
+    int name = pool.Utf8("Run");
+    int descriptor = pool.Utf8("([D[Z)V");
+    int codeName = pool.Utf8("Code");
+
+    byte[] body = code.Bytes();
+    byte[] start = prologue.Bytes();
+    byte[] end = epilogue.Bytes();
+    int length = start.length + body.length + end.length;
+    if (length > 0xFFFF || nextLocal > 0xFFFF) throw new Unsupported();
+
+    int maxStack = Math.max(code.MaxStack(), Math.max(prologue.MaxStack(), epilogue.MaxStack()));
+
+    Bytes out = new Bytes();
+    out.Int(0xCAFEBABE);
+    out.Short(0);
+    out.Short(49);
+    pool.WriteTo(out);
+
+    out.Short(0x0031); //public final super
+    out.Short(thisClass);
+    out.Short(superClass);
+    out.Short(0); //interfaces
+    out.Short(0); //fields
+
+    out.Short(1); //methods
+    out.Short(0x0009); //public static
+    out.Short(name);
+    out.Short(descriptor);
+    out.Short(1); //attributes
+    out.Short(codeName);
+    out.Int(12 + length);
+    out.Short(maxStack);
+    out.Short(nextLocal);
+    out.Int(length);
+    out.Write(start);
+    out.Write(body);
+    out.Write(end);
+    out.Short(0); //exception table
+    out.Short(0); //code attributes
+
+    out.Short(0); //class attributes
+    return out.toByteArray();
+  }
+
+  //the opcodes used here
+  private static class Op {
+    static final byte ICONST_0 = 0x03, ICONST_1 = 0x04, DCONST_0 = 0x0e, DCONST_1 = 0x0f;
+    static final byte BIPUSH = 0x10, SIPUSH = 0x11, LDC2_W = 0x14;
+    static final byte ILOAD = 0x15, DLOAD = 0x18, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b;
+    static final byte DALOAD = 0x31, BALOAD = 0x33;
+    static final byte ISTORE = 0x36, DSTORE = 0x39, DASTORE = 0x52, BASTORE = 0x54;
+    static final byte POP = 0x57, POP2 = 0x58, DUP = 0x59, DUP2 = 0x5c;
+    static final byte DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77, IXOR = (byte)0x82;
+    static final byte LCMP = (byte)0x94, DCMPL = (byte)0x97, DCMPG = (byte)0x98;
+    static final byte IFEQ = (byte)0x99, IFNE = (byte)0x9a, IFLT = (byte)0x9b, IFGE = (byte)0x9c, IFGT = (byte)0x9d, IFLE = (byte)0x9e;
+    static final byte IF_ICMPEQ = (byte)0x9f, IF_ICMPNE = (byte)0xa0, GOTO = (byte)0xa7;
+    static final byte RETURN = (byte)0xb1, INVOKESTATIC = (byte)0xb8, WIDE = (byte)0xc4;
+  }
+
+  private static class Bytes extends ByteArrayOutputStream {
+    void Short(int value) {
+      write(value >> 8);
+      write(value);
+    }
+
+    void Int(int value) {
+      Short(value >>> 16);
+      Short(value);
+    }
+
+    void Write(byte[] bytes) {
+      write(bytes, 0, bytes.length);
+    }
+
+    //the live buffer, for patching what's already been written
+    byte[] Buffer() {
+      return buf;
+    }
+  }
+
+  //a method body under construction, tracking the operand stack's depth as it goes
+  private static class Code {
+    private final Bytes bytes = new Bytes();
+    private int stack = 0;
+    private int maxStack = 0;
+
+    int Position() {
+      return bytes.size();
+    }
+
+    void Op(byte op, int effect) {
+      bytes.write(op);
+      Adjust(effect);
+    }
+
+    void Short(int value) {
+      bytes.Short(value);
+    }
+
+    void Adjust(int effect) {
+      stack += effect;
+      maxStack = Math.max(maxStack, stack);
+    }
+
+    int MaxStack() {
+      return maxStack;
+    }
+
+    //push a small non-negative int
+    void Int(int value) {
+      if (value <= 5) {
+        Op((byte)(Op.ICONST_0 + value), 1);
+      }
+      else if (value <= Byte.MAX_VALUE) {
+        Op(Op.BIPUSH, 1);
+        bytes.write(value);
+      }
+      else {
+        Op(Op.SIPUSH, 1);
+        bytes.Short(value);
+      }
+    }
+
+    void Local(byte op, int index, int effect) {
+      if (index > 0xFF) {
+        bytes.write(Op.WIDE);
+        Op(op, effect);
+        bytes.Short(index);
+      }
+      else {
+        Op(op, effect);
+        bytes.write(index);
+      }
+    }
+
+    //emit a jump with its offset left to Land(), returning where it is
+    int Jump(byte op, int effect) {
+      int at = Position();
+      Op(op, effect);
+      bytes.Short(0);
+      return at;
+    }
+
+    void JumpBack(int target) {
+      int at = Position();
+      Op(Op.GOTO, 0);
+      bytes.Short(Offset(target - at));
+    }
+
+    //point the jump at the current position
+    void Land(int jump) {
+      int offset = Offset(Position() - jump);
+      byte[] buffer = Buffer();
+      buffer[jump + 1] = (byte)(offset >> 8);
+      buffer[jump + 2] = (byte)offset;
+    }
+
+    byte[] Bytes() {
+      return bytes.toByteArray();
+    }
+
+    private byte[] Buffer() {
+      return bytes.Buffer();
+    }
+
+    private static int Offset(int offset) {
+      if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) throw new Unsupported();
+      return offset & 0xFFFF;
+    }
+  }
+
+  private static class ConstantPool {
+    private final Bytes bytes = new Bytes();
+    private final Map<Object, Integer> entries = new HashMap<>();
+    private int count = 1;
+
+    int Utf8(String text) {
+      return Entry("utf8:" + text, () -> {
+        bytes.write(1);
+        bytes.Short(text.length());
+        for (int i = 0; i < text.length(); i++) {
+          bytes.write(text.charAt(i)); //names here are all ASCII
+        }
+      }, 1);
+    }
+
+    int Class(String name) {
+      int utf8 = Utf8(name);
+      return Entry("class:" + name, () -> {
+        bytes.write(7);
+        bytes.Short(utf8);
+      }, 1);
+    }
+
+    int Double(double value) {
+      long bits = Double.doubleToRawLongBits(value);
+      return Entry(bits, () -> {
+        bytes.write(6);
+        bytes.Int((int)(bits >>> 32));
+        bytes.Int((int)bits);
+      }, 2);
+    }
+
+    int DoubleToLongBits() {
+      int owner = Class("java/lang/Double");
+      int name = Utf8("doubleToLongBits");
+      int type = Utf8("(D)J");
+      int nameAndType = Entry("nat:doubleToLongBits", () -> {
+        bytes.write(12);
+        bytes.Short(name);
+        bytes.Short(type);
+      }, 1);
+      return Entry("method:doubleToLongBits", () -> {
+        bytes.write(10);
+        bytes.Short(owner);
+        bytes.Short(nameAndType);
+      }, 1);
+    }
+
+    void WriteTo(Bytes out) {
+      out.Short(count);
+      out.Write(bytes.toByteArray());
+    }
+
+    private int Entry(Object key, Runnable write, int size) {
+      Integer index = entries.get(key);
+      if (index != null) return index;
+
+      write.run();
+      entries.put(key, count);
+      count += size;
+      return count - size;
+    }
+  }
+}
@@ -0,0 +1,338 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//loop-invariant code motion for the tree-walker
+//an expression that only reads variables a loop never writes is wrapped in an Expr.Invariant owned by that loop,
+//which computes it the first time it's reached after each loop entry and reuses the value from then on
+//evaluation stays where the expression was written, so errors and their lines are unchanged, just not repeated
+//the values live in the Interpreter, indexed by Expr.Invariant.index, so one hoisted AST can run on many interpreters at once
+class LoopHoister implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+  //an enclosing loop, and every name assigned or declared anywhere inside it
+  private static class Loop {
+    final Set<String> writes = new HashSet<>();
+    final List<Expr.Invariant> invariants = new ArrayList<>();
+  }
+
+  //members
+  private final List<Loop> loops = new ArrayList<>(); //outermost first
+  private int limit = 0; //only loops[0, limit) may own what's being rewritten
+  private int count = 0;
+
+  //wrapper functions
+  List<Stmt> Hoist(List<Stmt> statements) {
+    List<Stmt> result = new ArrayList<>();
+    for (Stmt statement : statements) {
+      result.add(Hoist(statement));
+    }
+    return result;
+  }
+
+  //AST types
+  @Override
+  public Expr Visit(Expr.Assign expr) {
+    Expr value = Hoist(expr.value);
+    if (value == expr.value) return expr;
+    return new Expr.Assign(expr.name, value);
+  }
+
+  @Override
+  public Expr Visit(Expr.Binary expr) {
+    Expr lhs = Hoist(expr.lhs);
+    Expr rhs = Hoist(expr.rhs);
+    if (lhs == expr.lhs && rhs == expr.rhs) return expr;
+    return new Expr.Binary(lhs, expr.operator, rhs);
+  }
+
+  @Override
+  public Expr Visit(Expr.Grouping expr) {
+    Expr expression = Hoist(expr.expression);
+    if (expression == expr.expression) return expr;
+    return new Expr.Grouping(expression);
+  }
+
+  @Override
+  public Expr Visit(Expr.Invariant expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr Visit(Expr.Literal expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr Visit(Expr.Logical expr) {
+    Expr lhs = Hoist(expr.lhs);
+    Expr rhs = Hoist(expr.rhs);
+    if (lhs == expr.lhs && rhs == expr.rhs) return expr;
+    return new Expr.Logical(lhs, expr.operator, rhs);
+  }
+
+  @Override
+  public Expr Visit(Expr.Unary expr) {
+    Expr rhs = Hoist(expr.rhs);
+    if (rhs == expr.rhs) return expr;
+    return new Expr.Unary(expr.operator, rhs);
+  }
+
+  @Override
+  public Expr Visit(Expr.Variable expr) {
+    return expr;
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Block stmt) {
+    return new Stmt.Block(Hoist(stmt.statements));
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Expression stmt) {
+    Expr expression = Hoist(stmt.expression);
+    if (expression == stmt.expression) return stmt;
+    return new Stmt.Expression(expression);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.If stmt) {
+    Expr condition = Hoist(stmt.condition);
+    Stmt thenBranch = Hoist(stmt.thenBranch);
+    Stmt elseBranch = stmt.elseBranch != null ? Hoist(stmt.elseBranch) : null;
+    return new Stmt.If(condition, thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Print stmt) {
+    Expr expression = Hoist(stmt.expression);
+    if (expression == stmt.expression) return stmt;
+    return new Stmt.Print(expression);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Var stmt) {
+    if (stmt.initializer == null) return stmt;
+    Expr initializer = Hoist(stmt.initializer);
+    if (initializer == stmt.initializer) return stmt;
+    return new Stmt.Var(stmt.name, initializer);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.While stmt) {
+    Loop loop = new Loop();
+    new Writes(loop.writes).Collect(stmt);
+
+    loops.add(loop);
+    int previous = limit;
+    limit = loops.size();
+
+    Stmt.While result;
+    try {
+      result = new Stmt.While(stmt.keyword, Hoist(stmt.condition), Hoist(stmt.body));
+    }
+    finally {
+      loops.remove(loops.size() - 1);
+      limit = previous;
+    }
+
+    if (!loop.invariants.isEmpty()) {
+      result.invariants = loop.invariants;
+    }
+    return result;
+  }
+
+  //helpers
+  private Stmt Hoist(Stmt stmt) {
+    return stmt.Accept(this);
+  }
+
+  //wrap the largest invariant expression, then look inside it for parts that can move further out
+  private Expr Hoist(Expr expr) {
+    if (limit == 0 || !Worthwhile(expr)) {
+      return expr.Accept(this);
+    }
+
+    int level = Level(expr);
+    if (level >= limit) {
+      return expr.Accept(this);
+    }
+
+    int previous = limit;
+    limit = level;
+    Expr inner;
+    try {
+      inner = expr.Accept(this);
+    }
+    finally {
+      limit = previous;
+    }
+
+    Expr.Invariant invariant = new Expr.Invariant(inner);
+    invariant.index = count++;
+    loops.get(level).invariants.add(invariant);
+    return invariant;
+  }
+
+  //the outermost loop that never writes anything expr reads, or loops.size() if there's none
+  //inner loops only write a subset of what outer loops write, so every loop inside that one qualifies too
+  private int Level(Expr expr) {
+    if (expr instanceof Expr.Literal) {
+      return 0;
+    }
+    if (expr instanceof Expr.Variable) {
+      String name = ((Expr.Variable)expr).name.Lexeme();
+      int level = 0;
+      while (level < loops.size() && loops.get(level).writes.contains(name)) {
+        level++;
+      }
+      return level;
+    }
+    if (expr instanceof Expr.Grouping) {
+      return Level(((Expr.Grouping)expr).expression);
+    }
+    if (expr instanceof Expr.Invariant) {
+      return Level(((Expr.Invariant)expr).expression);
+    }
+    if (expr instanceof Expr.Unary) {
+      return Level(((Expr.Unary)expr).rhs);
+    }
+    if (expr instanceof Expr.Binary) {
+      return Math.max(Level(((Expr.Binary)expr).lhs), Level(((Expr.Binary)expr).rhs));
+    }
+    if (expr instanceof Expr.Logical) {
+      return Math.max(Level(((Expr.Logical)expr).lhs), Level(((Expr.Logical)expr).rhs));
+    }
+
+    //assignments are never invariant
+    return loops.size();
+  }
+
+  //caching a lone variable or literal saves nothing, and constant operations have already been folded
+  private static boolean Worthwhile(Expr expr) {
+    return (expr instanceof Expr.Binary || expr instanceof Expr.Unary || expr instanceof Expr.Logical) && ReadsVariable(expr);
+  }
+
+  private static boolean ReadsVariable(Expr expr) {
+    if (expr instanceof Expr.Variable) return true;
+    if (expr instanceof Expr.Grouping) return ReadsVariable(((Expr.Grouping)expr).expression);
+    if (expr instanceof Expr.Unary) return ReadsVariable(((Expr.Unary)expr).rhs);
+    if (expr instanceof Expr.Binary) return ReadsVariable(((Expr.Binary)expr).lhs) || ReadsVariable(((Expr.Binary)expr).rhs);
+    if (expr instanceof Expr.Logical) return ReadsVariable(((Expr.Logical)expr).lhs) || ReadsVariable(((Expr.Logical)expr).rhs);
+    return false;
+  }
+
+  //collects every name a loop assigns or declares, including in its condition
+  //declarations count because a variable declared in the body is a fresh variable each iteration
+  private static class Writes implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final Set<String> names;
+
+    Writes(Set<String> names) {
+      this.names = names;
+    }
+
+    void Collect(Stmt stmt) {
+      stmt.Accept(this);
+    }
+
+    void Collect(Expr expr) {
+      expr.Accept(this);
+    }
+
+    @Override
+    public Void Visit(Expr.Assign expr) {
+      names.add(expr.name.Lexeme());
+      Collect(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Binary expr) {
+      Collect(expr.lhs);
+      Collect(expr.rhs);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Grouping expr) {
+      Collect(expr.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Invariant expr) {
+      Collect(expr.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Literal expr) {
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Logical expr) {
+      Collect(expr.lhs);
+      Collect(expr.rhs);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Unary expr) {
+      Collect(expr.rhs);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Expr.Variable expr) {
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Block stmt) {
+      for (Stmt statement : stmt.statements) {
+        Collect(statement);
+      }
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Expression stmt) {
+      Collect(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.If stmt) {
+      Collect(stmt.condition);
+      Collect(stmt.thenBranch);
+      if (stmt.elseBranch != null) {
+        Collect(stmt.elseBranch);
+      }
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Print stmt) {
+      Collect(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.Var stmt) {
+      names.add(stmt.name.Lexeme());
+      if (stmt.initializer != null) {
+        Collect(stmt.initializer);
+      }
+      return null;
+    }
+
+    @Override
+    public Void Visit(Stmt.While stmt) {
+      Collect(stmt.condition);
+      Collect(stmt.body);
+      return null;
+    }
+  }
+}
@@ -7,82 +7,238 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
 
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+//batch output
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.lang.reflect.Method;
+
 import java.nio.file.Paths;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Lox {
-  //members
-  static boolean errorState = false;
-  private static final Interpreter interpreter = new Interpreter();
-
   //universal entry point
-  public static void main(String[] args) throws IOException {
-    if (args.length > 1) {
-      System.out.println("Usage: jlox [script]");
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Context.Options options = new Context.Options();
+    boolean batch = false;
+    List<String> paths = new ArrayList<>();
+
+    for (String arg : args) {
+      if (arg.equals("--vm")) {
+        options.useVM = true;
+      }
+      else if (arg.equals("--deep")) {
+        options.useStack = true;
+      }
+      else if (arg.equals("--flat")) {
+        options.useFlat = true;
+      }
+      else if (arg.equals("--parallel")) {
+        options.useParallel = true;
+      }
+      else if (arg.equals("--stream")) {
+        options.useStream = true;
+      }
+      else if (arg.equals("--cache")) {
+        options.useCache = true;
+      }
+      else if (arg.startsWith("--cache-dir=")) {
+        options.useCache = true;
+        options.cacheDir = Paths.get(arg.substring("--cache-dir=".length()));
+      }
+      else if (arg.equals("--profile")) {
+        options.profile = true;
+      }
+      else if (arg.startsWith("--profile=")) {
+        options.profile = true;
+        options.profilePath = Paths.get(arg.substring("--profile=".length()));
+      }
+      else if (arg.startsWith("--prelude=")) {
+        options.prelude = Paths.get(arg.substring("--prelude=".length()));
+      }
+      else if (arg.startsWith("--snapshot=")) {
+        options.snapshotPath = Paths.get(arg.substring("--snapshot=".length()));
+      }
+      else if (arg.equals("--no-jit")) {
+        options.useJit = false;
+      }
+      else if (arg.equals("--dispatch=switch")) {
+        options.useSwitch = true;
+      }
+      else if (arg.equals("--dispatch=visitor")) {
+        options.useSwitch = false;
+      }
+      else if (arg.startsWith("--max-steps=")) {
+        options.maxSteps = Limit(arg.substring("--max-steps=".length()));
+      }
+      else if (arg.startsWith("--max-time=")) {
+        options.maxMillis = Limit(arg.substring("--max-time=".length()));
+      }
+      else if (arg.startsWith("--max-bytes=")) {
+        options.maxBytes = Limit(arg.substring("--max-bytes=".length()));
+      }
+      else if (arg.equals("--batch")) {
+        batch = true;
+      }
+      else if (!arg.startsWith("--") && (batch || paths.isEmpty())) {
+        paths.add(arg);
+      }
+      else {
+        Usage();
+        return;
+      }
+    }
+
+    //the profiler and the budgets hook into the Interpreter, so they can't see the other backends
+    boolean limited = options.maxSteps != 0 || options.maxMillis != 0 || options.maxBytes != 0;
+    int backends = (options.useVM ? 1 : 0) + (options.useFlat ? 1 : 0) + (options.useStack ? 1 : 0);
+    if ((options.profile || limited) && backends > 0 || backends > 1) {
+      Usage();
+      return;
+    }
+
+    //parallel groups run on tree-walkers of their own, and streaming only ever has one statement to hand them
+    if (options.useParallel && (options.profile || limited || backends > 0 || options.useStream)) {
+      Usage();
+      return;
+    }
+
+    //the AST cache reads and writes recursively
+    if (options.useStack && options.useCache) {
+      Usage();
+      return;
     }
-    else if (args.length == 1) {
-      RunFile(args[0]);
+
+    //the VM keeps its globals to itself, so there's nothing to restore them into
+    if (options.prelude == null && options.snapshotPath != null || options.prelude != null && options.useVM) {
+      Usage();
+      return;
+    }
+
+    if (options.maxSteps < 0 || options.maxMillis < 0 || options.maxBytes < 0) {
+      Usage();
+      return;
+    }
+
+    if (batch) {
+      RunBatch(options, paths);
+    }
+    else if (!paths.isEmpty()) {
+      RunFile(options, paths.get(0));
     }
     else {
-      RunPrompt();
+      RunPrompt(options);
+    }
+  }
+
+  //-1 if it isn't a non-negative number
+  private static long Limit(String text) {
+    try {
+      return Math.max(-1, Long.parseLong(text));
     }
+    catch(NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void Usage() {
+    System.out.println("Usage: jlox [--vm | --flat | --deep | --parallel | --profile[=FILE]] [--stream] [--cache | --cache-dir=DIR] [--prelude=FILE [--snapshot=FILE]] [--no-jit] [--dispatch=visitor|switch] [--max-steps=N] [--max-time=MS] [--max-bytes=N] [script]");
+    System.out.println("       jlox [options] --batch script...");
   }
 
   //wrapper functions
-  private static void RunFile(String path) throws IOException {
-    byte[] bytes = Files.readAllBytes(Paths.get(path));
-    Run(new String(bytes, Charset.defaultCharset()));
-    if (errorState) {
+  private static void RunFile(Context.Options options, String path) throws IOException {
+    Context context = new Context(options, new OutputSink.Buffered(System.out, 8192), System.err);
+    try {
+      context.RunFile(path);
+    }
+    finally {
+      context.output.Flush();
+    }
+    if (context.errorState) {
       System.exit(1);
     }
   }
 
-  private static void RunPrompt() throws IOException {
+  private static void RunPrompt(Context.Options options) throws IOException {
+    Context context = new Context(options, new OutputSink.Buffered(System.out, 8192), System.err);
     InputStreamReader input = new InputStreamReader(System.in);
     BufferedReader reader = new BufferedReader(input);
 
+    context.RunPrelude();
+    context.output.Flush();
+    context.errorState = false;
+
     for (;;) {
       System.out.print(">");
-      Run(reader.readLine());
-      errorState = false;
+      context.Run(reader.readLine());
+      context.output.Flush();
+      context.errorState = false;
     }
   }
 
-  //core function
-  private static void Run(String source) {
-    Lexer lexer = new Lexer(source);
-    Parser parser = new Parser(lexer.ScanTokens());
-
-    List<Stmt> statements = parser.Parse();
-
-    if (errorState) return;
+  //runs every script concurrently, each in its own Context
+  //a script's output is held until it finishes, then written out in one piece
+  private static void RunBatch(Context.Options options, List<String> paths) throws InterruptedException {
+    ExecutorService executor = NewExecutor();
+    List<Future<Boolean>> results = new ArrayList<>();
+
+    for (String path : paths) {
+      results.add(executor.submit(() -> {
+        OutputSink.Capture output = new OutputSink.Capture();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Context context = new Context(options, output, new PrintStream(errors, true));
+
+        try {
+          context.RunFile(path);
+        }
+        catch(IOException e) {
+          context.errorState = true;
+          errors.writeBytes(("Could not read " + path + ": " + e.getMessage() + System.lineSeparator()).getBytes());
+        }
+
+        synchronized(Lox.class) {
+          System.out.print(output.Contents());
+          System.out.flush();
+          System.err.print(errors);
+          System.err.flush();
+        }
+        return !context.errorState;
+      }));
+    }
 
-    interpreter.Interpret(statements);
-  }
+    executor.shutdown();
+
+    boolean failed = false;
+    for (Future<Boolean> result : results) {
+      try {
+        failed |= !result.get();
+      }
+      catch(ExecutionException e) {
+        e.getCause().printStackTrace();
+        failed = true;
+      }
+    }
 
-  //error functions
-  static void Error(int line, String msg) {
-    Report(line, "", msg);
+    if (failed) {
+      System.exit(1);
+    }
   }
 
-  static void Error(Token token, String msg) {
-    if (token.type == TokenType.EOF) {
-      Report(token.line, " at end of file", msg);
+  //virtual threads where the runtime has them (Java 21+), otherwise one platform thread per core
+  private static ExecutorService NewExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService)factory.invoke(null);
     }
-    else {
-      Report(token.line, "at '" + token.lexeme + "'", msg);
+    catch(ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
   }
-
-  static void RuntimeError(RuntimeError error) {
-    Report(error.token.line, "", error.getMessage());
-  }
-
-  private static void Report(int line, String where, String msg) {
-    System.err.println("[line " + line + "] Error" + where + ": " + msg);
-    errorState = true;
-  }
 }
@@ -0,0 +1,178 @@
+package com.krgamestudios.lox;
+
+//exceptions
+import java.io.IOException;
+import javax.script.ScriptException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.SimpleBindings;
+
+//JSR-223 entry point for embedding
+//compile() lexes, parses and resolves a script once, and the CompiledScript runs it against any ScriptContext,
+//with the context's engine-scope Bindings as the lox globals, falling back to its global-scope Bindings for reads
+//lox only has numbers, strings, booleans and nil, so Java numbers and chars in the bindings are read as Double and String
+//each eval runs on private copies of the Bindings, and writes back what the script assigned while holding the Bindings' lock
+public class LoxScriptEngine extends AbstractScriptEngine implements Compilable {
+  //members
+  private final ScriptEngineFactory factory;
+
+  public LoxScriptEngine() {
+    this(new LoxScriptEngineFactory());
+  }
+
+  LoxScriptEngine(ScriptEngineFactory factory) {
+    this.factory = factory;
+  }
+
+  //ScriptEngine
+  @Override
+  public Object eval(String script, ScriptContext context) throws ScriptException {
+    return compile(script).eval(context);
+  }
+
+  @Override
+  public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+    return compile(reader).eval(context);
+  }
+
+  @Override
+  public Bindings createBindings() {
+    return new SimpleBindings();
+  }
+
+  @Override
+  public ScriptEngineFactory getFactory() {
+    return factory;
+  }
+
+  //Compilable
+  @Override
+  public CompiledScript compile(String script) throws ScriptException {
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    Context context = new Context(new Context.Options(), new OutputSink.Capture(), new PrintStream(errors, true));
+
+    List<Stmt> statements = context.Parse(script);
+    if (context.errorState) {
+      throw new ScriptException(errors.toString().trim());
+    }
+
+    return new Script(this, Context.Prepare(statements));
+  }
+
+  @Override
+  public CompiledScript compile(Reader reader) throws ScriptException {
+    StringBuilder script = new StringBuilder();
+    char[] buffer = new char[8192];
+
+    try {
+      for (int count; (count = reader.read(buffer)) >= 0; ) {
+        script.append(buffer, 0, count);
+      }
+    }
+    catch(IOException e) {
+      throw new ScriptException(e);
+    }
+
+    return compile(script.toString());
+  }
+
+  //a prepared program; each eval() runs it on a fresh Context, so evaluations don't share anything but the Bindings
+  private static class Script extends CompiledScript {
+    private final ScriptEngine engine;
+    private final List<Stmt> statements;
+
+    Script(ScriptEngine engine, List<Stmt> statements) {
+      this.engine = engine;
+      this.statements = statements;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+      return engine;
+    }
+
+    //lox statements produce no value, so this always returns null
+    @Override
+    public Object eval(ScriptContext scriptContext) throws ScriptException {
+      Bindings engineScope = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+      Bindings globalScope = scriptContext.getBindings(ScriptContext.GLOBAL_SCOPE);
+
+      //the script runs on private copies, so concurrent evals never write to a shared Bindings unlocked
+      Map<String, Object> engineValues = ToLox(engineScope);
+      Map<String, Object> engineInitial = new HashMap<>(engineValues);
+      Map<String, Object> globalValues = globalScope != null ? ToLox(globalScope) : null;
+      Map<String, Object> globalInitial = globalScope != null ? new HashMap<>(globalValues) : null;
+
+      Environment globals;
+      if (globalScope != null) {
+        globals = new Environment(new Environment(null, globalValues), engineValues);
+      }
+      else {
+        globals = new Environment(null, engineValues);
+      }
+
+      OutputSink output = new OutputSink.ToWriter(scriptContext.getWriter());
+      ByteArrayOutputStream errors = new ByteArrayOutputStream();
+      Context context = new Context(new Context.Options(), output, new PrintStream(errors, true), globals);
+
+      try {
+        context.Interpret(statements);
+      }
+      finally {
+        output.Flush();
+        FromLox(engineScope, engineInitial, engineValues);
+        if (globalScope != null) {
+          FromLox(globalScope, globalInitial, globalValues);
+        }
+      }
+
+      if (context.errorState) {
+        throw new ScriptException(errors.toString().trim());
+      }
+      return null;
+    }
+  }
+
+  //helpers
+  //a copy of the bindings with lox values; the bindings themselves are left alone
+  private static Map<String, Object> ToLox(Bindings bindings) {
+    Map<String, Object> values = new HashMap<>();
+    synchronized(bindings) {
+      for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Number && !(value instanceof Double)) {
+          value = ((Number)value).doubleValue();
+        }
+        else if (value instanceof Character || value instanceof CharSequence && !(value instanceof String)) {
+          value = value.toString();
+        }
+        values.put(entry.getKey(), value);
+      }
+    }
+    return values;
+  }
+
+  //only names the script declared or assigned are written back, and strings built by concatenation go back as plain Strings
+  private static void FromLox(Bindings bindings, Map<String, Object> initial, Map<String, Object> values) {
+    synchronized(bindings) {
+      for (Map.Entry<String, Object> entry : values.entrySet()) {
+        if (initial.containsKey(entry.getKey()) && initial.get(entry.getKey()) == entry.getValue()) continue;
+        bindings.put(entry.getKey(), Rope.Flatten(entry.getValue()));
+      }
+    }
+  }
+}
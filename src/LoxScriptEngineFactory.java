@@ -0,0 +1,94 @@
+package com.krgamestudios.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+//lets javax.script find the engine, e.g. new ScriptEngineManager().getEngineByName("lox")
+//registered in META-INF/services/javax.script.ScriptEngineFactory
+public class LoxScriptEngineFactory implements ScriptEngineFactory {
+  private static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList("lox", "jlox"));
+  private static final List<String> EXTENSIONS = Collections.singletonList("lox");
+  private static final List<String> MIME_TYPES = Collections.singletonList("application/x-lox");
+
+  @Override
+  public String getEngineName() {
+    return "jlox";
+  }
+
+  @Override
+  public String getEngineVersion() {
+    return "1.0";
+  }
+
+  @Override
+  public List<String> getExtensions() {
+    return EXTENSIONS;
+  }
+
+  @Override
+  public List<String> getMimeTypes() {
+    return MIME_TYPES;
+  }
+
+  @Override
+  public List<String> getNames() {
+    return NAMES;
+  }
+
+  @Override
+  public String getLanguageName() {
+    return "lox";
+  }
+
+  @Override
+  public String getLanguageVersion() {
+    return "1.0";
+  }
+
+  //every evaluation runs on its own interpreter, so scripts may run on many threads at once
+  @Override
+  public Object getParameter(String key) {
+    switch(key) {
+      case ScriptEngine.ENGINE: return getEngineName();
+      case ScriptEngine.ENGINE_VERSION: return getEngineVersion();
+      case ScriptEngine.LANGUAGE: return getLanguageName();
+      case ScriptEngine.LANGUAGE_VERSION: return getLanguageVersion();
+      case ScriptEngine.NAME: return NAMES.get(0);
+      case "THREADING": return "MULTITHREADED";
+      default: return null;
+    }
+  }
+
+  //lox has no methods, but this is the syntax it reserves for them
+  @Override
+  public String getMethodCallSyntax(String obj, String m, String... args) {
+    return obj + "." + m + "(" + String.join(", ", args) + ")";
+  }
+
+  @Override
+  public String getOutputStatement(String toDisplay) {
+    return "print \"" + toDisplay + "\";";
+  }
+
+  @Override
+  public String getProgram(String... statements) {
+    StringBuilder program = new StringBuilder();
+    for (String statement : statements) {
+      program.append(statement);
+      if (!statement.trim().endsWith(";") && !statement.trim().endsWith("}")) {
+        program.append(';');
+      }
+      program.append('\n');
+    }
+    return program.toString();
+  }
+
+  @Override
+  public ScriptEngine getScriptEngine() {
+    return new LoxScriptEngine(this);
+  }
+}
@@ -0,0 +1,113 @@
+package com.krgamestudios.lox;
+
+//parses number literals straight from the source chars, and boxes each distinct value once
+//a literal whose digits fit in 53 bits, with at most 22 of them after the point, is one exact int-to-double
+//conversion and one correctly rounded division by an exact power of ten; anything else goes to Double.parseDouble
+//not thread-safe; each lexer has its own
+final class NumberLiterals {
+  private static final long MAX_MANTISSA = 1L << 53;
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  //members
+  private long[] keys = new long[64]; //raw bits of each value
+  private Double[] values = new Double[64]; //null for empty
+  private int count = 0;
+
+  //parse source[start, end), which the lexer has already checked is digits with at most one '.'
+  static double Parse(CharSequence source, int start, int end) {
+    long mantissa = 0;
+    int fraction = -1;
+
+    for (int i = start; i < end; i++) {
+      char c = source.charAt(i);
+      if (c == '.') {
+        fraction = 0;
+        continue;
+      }
+
+      mantissa = mantissa * 10 + (c - '0');
+      if (mantissa >= MAX_MANTISSA) {
+        return Double.parseDouble(source.subSequence(start, end).toString());
+      }
+      if (fraction >= 0) fraction++;
+    }
+
+    double value = Scale(mantissa, fraction);
+    return value == value ? value : Double.parseDouble(source.subSequence(start, end).toString());
+  }
+
+  //the one shared Double for this value
+  Double Box(double value) {
+    long bits = Double.doubleToRawLongBits(value);
+    int mask = keys.length - 1;
+
+    for (int index = Hash(bits) & mask; ; index = (index + 1) & mask) {
+      if (values[index] == null) {
+        Double boxed = value;
+        keys[index] = bits;
+        values[index] = boxed;
+
+        //keep the table at most half full
+        if (++count * 2 > keys.length) {
+          Rehash();
+        }
+        return boxed;
+      }
+      if (keys[index] == bits) {
+        return values[index];
+      }
+    }
+  }
+
+  int Count() {
+    return count;
+  }
+
+  //forget every boxed value
+  void Clear() {
+    keys = new long[64];
+    values = new Double[64];
+    count = 0;
+  }
+
+  //helpers
+  //NaN when there are too many decimals to divide exactly; a literal is never NaN otherwise
+  private static double Scale(long mantissa, int fraction) {
+    if (fraction <= 0) {
+      return (double)mantissa;
+    }
+    if (fraction < POWERS_OF_TEN.length) {
+      return (double)mantissa / POWERS_OF_TEN[fraction];
+    }
+    return Double.NaN;
+  }
+
+  private void Rehash() {
+    long[] oldKeys = keys;
+    Double[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new Double[oldValues.length * 2];
+
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] == null) continue;
+
+      int index = Hash(oldKeys[i]) & mask;
+      while (values[index] != null) {
+        index = (index + 1) & mask;
+      }
+      keys[index] = oldKeys[i];
+      values[index] = oldValues[i];
+    }
+  }
+
+  //small integers differ only in the high bits of a double
+  private static int Hash(long bits) {
+    int hash = Long.hashCode(bits) * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
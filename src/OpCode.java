@@ -0,0 +1,42 @@
+package com.krgamestudios.lox;
+
+//instruction set for the bytecode backend, operands are noted beside each
+final class OpCode {
+  //literals
+  static final byte CONSTANT      = 0;  //u16 constant index
+  static final byte NIL           = 1;
+  static final byte TRUE          = 2;
+  static final byte FALSE         = 3;
+  static final byte POP           = 4;
+  static final byte POP_N         = 5;  //u16 count
+
+  //variables
+  static final byte GET_LOCAL     = 6;  //u16 stack slot
+  static final byte SET_LOCAL     = 7;  //u16 stack slot
+  static final byte GET_GLOBAL    = 8;  //u16 name constant
+  static final byte SET_GLOBAL    = 9;  //u16 name constant
+  static final byte DEFINE_GLOBAL = 10; //u16 name constant
+
+  //operators
+  static final byte EQUAL         = 11;
+  static final byte NOT_EQUAL     = 12;
+  static final byte GREATER       = 13;
+  static final byte GREATER_EQUAL = 14;
+  static final byte LESS          = 15;
+  static final byte LESS_EQUAL    = 16;
+  static final byte ADD           = 17;
+  static final byte SUBTRACT      = 18;
+  static final byte MULTIPLY      = 19;
+  static final byte DIVIDE        = 20;
+  static final byte NOT           = 21;
+  static final byte NEGATE        = 22;
+
+  //statements and control flow
+  static final byte PRINT         = 23;
+  static final byte JUMP          = 24; //u16 forward offset
+  static final byte JUMP_IF_FALSE = 25; //u16 forward offset, leaves the condition
+  static final byte LOOP          = 26; //u16 backward offset
+  static final byte RETURN        = 27;
+
+  private OpCode() {}
+}
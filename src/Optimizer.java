@@ -0,0 +1,178 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//folds constant expressions and prunes branches with constant conditions
+//anything that would raise a runtime error is left in place, so it's still reported at its own line
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+  //wrapper functions
+  List<Stmt> Optimize(List<Stmt> statements) {
+    List<Stmt> result = new ArrayList<>();
+    for (Stmt statement : statements) {
+      Stmt optimized = Optimize(statement);
+      if (optimized != null) {
+        result.add(optimized);
+      }
+    }
+    return result;
+  }
+
+  //AST types
+  @Override
+  public Expr Visit(Expr.Assign expr) {
+    Expr value = Optimize(expr.value);
+    if (value == expr.value) return expr;
+    return new Expr.Assign(expr.name, value);
+  }
+
+  @Override
+  public Expr Visit(Expr.Binary expr) {
+    Expr lhs = Optimize(expr.lhs);
+    Expr rhs = Optimize(expr.rhs);
+
+    if (lhs instanceof Expr.Literal && rhs instanceof Expr.Literal) {
+      try {
+        //literals hold plain Strings, never Ropes
+        return new Expr.Literal(Rope.Flatten(Interpreter.ApplyBinary(expr, ((Expr.Literal)lhs).value, ((Expr.Literal)rhs).value)));
+      }
+      catch(RuntimeError error) {
+        //leave it for the interpreter to report
+      }
+    }
+
+    if (lhs == expr.lhs && rhs == expr.rhs) return expr;
+    return new Expr.Binary(lhs, expr.operator, rhs);
+  }
+
+  @Override
+  public Expr Visit(Expr.Grouping expr) {
+    //groupings only matter to the parser
+    return Optimize(expr.expression);
+  }
+
+  @Override
+  public Expr Visit(Expr.Invariant expr) {
+    return Optimize(expr.expression);
+  }
+
+  @Override
+  public Expr Visit(Expr.Literal expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr Visit(Expr.Logical expr) {
+    Expr lhs = Optimize(expr.lhs);
+    Expr rhs = Optimize(expr.rhs);
+
+    if (lhs instanceof Expr.Literal) {
+      boolean truthy = Interpreter.IsTruthy(((Expr.Literal)lhs).value);
+      if (expr.operator.type == TokenType.OR) {
+        return truthy ? lhs : rhs;
+      }
+      return truthy ? rhs : lhs;
+    }
+
+    if (lhs == expr.lhs && rhs == expr.rhs) return expr;
+    return new Expr.Logical(lhs, expr.operator, rhs);
+  }
+
+  @Override
+  public Expr Visit(Expr.Unary expr) {
+    Expr rhs = Optimize(expr.rhs);
+
+    if (rhs instanceof Expr.Literal) {
+      Object value = ((Expr.Literal)rhs).value;
+      switch(expr.operator.type) {
+        case MINUS:
+          if (value instanceof Double) {
+            return new Expr.Literal(-(double)value);
+          }
+          break;
+        case BANG:
+          return new Expr.Literal(!Interpreter.IsTruthy(value));
+      }
+    }
+
+    if (rhs == expr.rhs) return expr;
+    return new Expr.Unary(expr.operator, rhs);
+  }
+
+  @Override
+  public Expr Visit(Expr.Variable expr) {
+    return expr;
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Block stmt) {
+    return new Stmt.Block(Optimize(stmt.statements));
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Expression stmt) {
+    Expr expression = Optimize(stmt.expression);
+    if (expression == stmt.expression) return stmt;
+    return new Stmt.Expression(expression);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.If stmt) {
+    Expr condition = Optimize(stmt.condition);
+
+    if (condition instanceof Expr.Literal) {
+      if (Interpreter.IsTruthy(((Expr.Literal)condition).value)) {
+        return OptimizeBranch(stmt.thenBranch);
+      }
+      return stmt.elseBranch != null ? OptimizeBranch(stmt.elseBranch) : null;
+    }
+
+    Stmt thenBranch = OptimizeBranch(stmt.thenBranch);
+    Stmt elseBranch = stmt.elseBranch != null ? Optimize(stmt.elseBranch) : null;
+    return new Stmt.If(condition, thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Print stmt) {
+    Expr expression = Optimize(stmt.expression);
+    if (expression == stmt.expression) return stmt;
+    return new Stmt.Print(expression);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.Var stmt) {
+    if (stmt.initializer == null) return stmt;
+    Expr initializer = Optimize(stmt.initializer);
+    if (initializer == stmt.initializer) return stmt;
+    return new Stmt.Var(stmt.name, initializer);
+  }
+
+  @Override
+  public Stmt Visit(Stmt.While stmt) {
+    Expr condition = Optimize(stmt.condition);
+
+    if (condition instanceof Expr.Literal && !Interpreter.IsTruthy(((Expr.Literal)condition).value)) {
+      return null;
+    }
+
+    return new Stmt.While(stmt.keyword, condition, OptimizeBranch(stmt.body));
+  }
+
+  //helpers
+  private Stmt Optimize(Stmt stmt) {
+    return stmt.Accept(this);
+  }
+
+  private Expr Optimize(Expr expr) {
+    return expr.Accept(this);
+  }
+
+  //a pruned statement in a single-statement position becomes an empty block
+  private Stmt OptimizeBranch(Stmt stmt) {
+    Stmt optimized = Optimize(stmt);
+    if (optimized == null) {
+      return new Stmt.Block(new ArrayList<>());
+    }
+    return optimized;
+  }
+}
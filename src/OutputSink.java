@@ -0,0 +1,101 @@
+package com.krgamestudios.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+//where print statements send their output
+interface OutputSink {
+  void Print(String text);
+  void Flush();
+
+  //collects lines and hands them to the stream in large writes
+  static class Buffered implements OutputSink {
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final PrintStream out;
+    private final StringBuilder buffer;
+    private final int capacity;
+
+    Buffered(PrintStream out, int capacity) {
+      this.out = out;
+      this.buffer = new StringBuilder(capacity + 64);
+      this.capacity = capacity;
+    }
+
+    @Override
+    public void Print(String text) {
+      buffer.append(text).append(NEWLINE);
+      if (buffer.length() >= capacity) {
+        Flush();
+      }
+    }
+
+    @Override
+    public void Flush() {
+      if (buffer.length() > 0) {
+        out.append(buffer);
+        buffer.setLength(0);
+      }
+      out.flush();
+    }
+  }
+
+  //writes to a character stream, such as a ScriptContext's writer
+  static class ToWriter implements OutputSink {
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final Writer out;
+
+    ToWriter(Writer out) {
+      this.out = out;
+    }
+
+    @Override
+    public void Print(String text) {
+      try {
+        out.write(text);
+        out.write(NEWLINE);
+      }
+      catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void Flush() {
+      try {
+        out.flush();
+      }
+      catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  //keeps everything in memory, for embedding
+  static class Capture implements OutputSink {
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Override
+    public void Print(String text) {
+      buffer.append(text).append(NEWLINE);
+    }
+
+    @Override
+    public void Flush() {
+      //nothing to do
+    }
+
+    String Contents() {
+      return buffer.toString();
+    }
+
+    void Clear() {
+      buffer.setLength(0);
+    }
+  }
+}
@@ -6,12 +6,18 @@ import java.util.Arrays;
 
 import static com.krgamestudios.lox.TokenType.*;
 
+//recursive descent; the StackParser overrides Declaration() and Expression() to do the same without recursing
 class Parser {
-  private final List<Token> tokens;
-  private int current = 0;
+  final TokenStream tokens;
+  private final Context context;
 
-  Parser(List<Token> tokens) {
+  Parser(List<Token> tokens, Context context) {
+    this(new TokenList(tokens), context);
+  }
+
+  Parser(TokenStream tokens, Context context) {
     this.tokens = tokens;
+    this.context = context;
   }
 
   List<Stmt> Parse() {
@@ -22,12 +28,21 @@ class Parser {
     return statements;
   }
 
-  private void Synchronize() {
+  //incremental interface, one top-level declaration at a time
+  boolean HasNext() {
+    return !IsAtEnd();
+  }
+
+  Stmt ParseNext() {
+    return Declaration();
+  }
+
+  void Synchronize() {
     Advance();
 
     while(!IsAtEnd()) {
       if (Previous().type == SEMICOLON) return;
-      switch(Peek().type) {
+      switch(tokens.PeekType()) {
         case CLASS:
         case FUN:
         case VAR:
@@ -43,7 +58,7 @@ class Parser {
   }
 
   //parser rules
-  private Stmt Declaration() {
+  Stmt Declaration() {
     try {
       if (Match(VAR)) return VarDeclaration();
       return Statement();
@@ -54,8 +69,9 @@ class Parser {
     }
   }
 
-  private Stmt VarDeclaration() {
-    Token name = Consume(IDENTIFIER, "Expected variable name.");
+  Stmt VarDeclaration() {
+    Consume(IDENTIFIER, "Expected variable name.");
+    Token name = Previous();
     Expr initializer = null;
     if (Match(EQUAL)) {
       initializer = Expression();
@@ -74,6 +90,7 @@ class Parser {
   }
 
   private Stmt ForStatement() {
+    Token keyword = Previous();
     Consume(LEFT_PAREN, "Expected '(' after 'for'.");
 
     //initializer
@@ -112,7 +129,7 @@ class Parser {
     if (condition == null) {
       condition = new Expr.Literal(true);
     }
-    body = new Stmt.While(condition, body);
+    body = new Stmt.While(keyword, condition, body);
 
     if (initializer != null) {
       body = new Stmt.Block(Arrays.asList(initializer, body));
@@ -135,7 +152,7 @@ class Parser {
     return new Stmt.If(condition, thenBranch, elseBranch);
   }
 
-  private Stmt PrintStatement() {
+  Stmt PrintStatement() {
     Expr value = Expression();
     Consume(SEMICOLON, "Expected ';' after print statement.");
     return new Stmt.Print(value);
@@ -153,21 +170,22 @@ class Parser {
   }
 
   private Stmt WhileStatement() {
+    Token keyword = Previous();
     Consume(LEFT_PAREN, "Expected '(' after 'while'.");
     Expr condition = Expression();
     Consume(RIGHT_PAREN, "Expected ')' after while condition.");
     Stmt body = Statement();
 
-    return new Stmt.While(condition, body);
+    return new Stmt.While(keyword, condition, body);
   }
 
-  private Stmt ExpressionStatement() {
+  Stmt ExpressionStatement() {
     Expr value = Expression();
     Consume(SEMICOLON, "Expected ';' after statement.");
     return new Stmt.Expression(value);
   }
 
-  private Expr Expression() {
+  Expr Expression() {
     return Assignment();
   }
 
@@ -279,7 +297,7 @@ class Parser {
     if (Match(NIL)) return new Expr.Literal(null);
 
     if (Match(NUMBER, STRING)) {
-      return new Expr.Literal(Previous().literal);
+      return new Expr.Literal(tokens.PreviousLiteral());
     }
 
     if (Match(IDENTIFIER)) return new Expr.Variable(Previous());
@@ -294,7 +312,7 @@ class Parser {
   }
 
   //helpers
-  private boolean Match(TokenType... types) {
+  boolean Match(TokenType... types) {
     for (TokenType type : types) {
       if (Check(type)) {
         Advance();
@@ -304,38 +322,64 @@ class Parser {
     return false;
   }
 
-  private boolean Check(TokenType type) {
+  boolean Check(TokenType type) {
     if (IsAtEnd()) return false;
-    return Peek().type == type;
+    return tokens.PeekType() == type;
   }
 
-  private Token Advance() {
-    if (!IsAtEnd()) current++;
-    return Previous();
+  void Advance() {
+    if (!IsAtEnd()) tokens.Advance();
   }
 
-  private boolean IsAtEnd() {
-    return Peek().type == EOF;
+  boolean IsAtEnd() {
+    return tokens.PeekType() == EOF;
   }
 
-  private Token Peek() {
-    return tokens.get(current);
+  Token Peek() {
+    return tokens.Peek();
   }
 
-  private Token Previous() {
-    return tokens.get(current-1);
+  Token Previous() {
+    return tokens.Previous();
   }
 
-  private Token Consume(TokenType type, String msg) {
-    if (Check(type)) return Advance();
+  void Consume(TokenType type, String msg) {
+    if (Check(type)) {
+      Advance();
+      return;
+    }
     throw Error(Peek(), msg);
   }
 
   //error handling
-  private ParseError Error(Token token, String msg) {
-    Lox.Error(token, msg);
+  ParseError Error(Token token, String msg) {
+    context.Error(token, msg);
     return new ParseError();
   }
 
-  private static class ParseError extends RuntimeException {}
+  static class ParseError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+
+  //adapts an already scanned list of tokens
+  private static class TokenList implements TokenStream {
+    private final List<Token> tokens;
+    private int current = 0;
+
+    TokenList(List<Token> tokens) {
+      this.tokens = tokens;
+    }
+
+    public Token Peek() {
+      return tokens.get(current);
+    }
+
+    public Token Previous() {
+      return tokens.get(current-1);
+    }
+
+    public void Advance() {
+      current++;
+    }
+  }
 }
@@ -0,0 +1,272 @@
+package com.krgamestudios.lox;
+
+//exceptions
+import java.io.IOException;
+
+import java.io.PrintStream;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+//records a call tree of the nodes the Interpreter executes, with counts and times per node
+//each frame is one node reached along one path; Lox has no calls, so every node has exactly one path,
+//and its frame is kept on the node itself instead of being looked up among the current frame's children
+//the interpreter only counts entries and moves a pointer; time comes from a sampler thread that
+//notes which frame is current every SAMPLE_NANOS, since reading the clock costs more than most nodes
+class Profiler {
+  static final long SAMPLE_NANOS = 1_000_000; //waking more often slowed the interpreter more than its own hooks did, on one core
+
+  static class Frame {
+    final Object node;
+    final String label;
+    final int line;
+    final Frame parent;
+
+    private Frame[] children = new Frame[2];
+    private int childCount = 0;
+
+    long count = 0;
+    private long samples = 0; //only written by the sampler thread
+
+    Frame(Object node, String label, int line, Frame parent) {
+      this.node = node;
+      this.label = label;
+      this.line = line;
+      this.parent = parent;
+    }
+
+    private Frame AddChild(Frame child) {
+      if (childCount == children.length) {
+        Frame[] grown = new Frame[children.length * 2];
+        System.arraycopy(children, 0, grown, 0, childCount);
+        children = grown;
+      }
+      children[childCount++] = child;
+      return child;
+    }
+
+    //samples taken here or anywhere below
+    private long TotalSamples() {
+      long total = samples;
+      for (int i = 0; i < childCount; i++) {
+        total += children[i].TotalSamples();
+      }
+      return total;
+    }
+  }
+
+  //totals for one source line, built from the frame tree when reporting
+  static class Line {
+    //most self time first, then most hits
+    static final Comparator<Line> HOTTEST = new Comparator<Line>() {
+      @Override
+      public int compare(Line a, Line b) {
+        return a.selfSamples != b.selfSamples ? Long.compare(b.selfSamples, a.selfSamples) : Long.compare(b.hits, a.hits);
+      }
+    };
+
+    final int line;
+    long hits = 0;
+    long selfSamples = 0;
+    long totalSamples = 0;
+
+    Line(int line) {
+      this.line = line;
+    }
+  }
+
+  //members
+  final Frame root = new Frame(null, "script", 0, null);
+  private Frame current = root; //read by the sampler without synchronization; a stale read only misplaces one sample
+
+  private Thread sampler = null;
+  private volatile boolean sampling = false;
+  private long elapsedNanos = 0;
+  private long sampleCount = 0;
+
+  //the sampler runs between Start() and Stop(), which may be called more than once
+  void Start() {
+    sampling = true;
+    sampler = new Thread("lox-profiler") {
+      @Override
+      public void run() {
+        Sample();
+      }
+    };
+    sampler.setDaemon(true);
+    sampler.start();
+  }
+
+  void Stop() {
+    sampling = false;
+    try {
+      sampler.join();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  //entering and leaving nodes
+  void Enter(Stmt stmt) {
+    Frame frame = stmt.frame;
+    if (frame == null) {
+      frame = stmt.frame = current.AddChild(NewFrame(stmt, stmt.getClass().getSimpleName(), LineFinder.Find(stmt)));
+    }
+    frame.count++;
+    current = frame;
+  }
+
+  void Enter(Expr expr) {
+    Frame frame = expr.frame;
+    if (frame == null) {
+      frame = expr.frame = current.AddChild(NewFrame(expr, expr.getClass().getSimpleName(), LineFinder.Find(expr)));
+    }
+    frame.count++;
+    current = frame;
+  }
+
+  //a node is only ever reached from the node containing it, so its frame's parent is the frame it was entered from
+  void Exit() {
+    current = current.parent;
+  }
+
+  //back to the top level, after an error skipped the exits
+  void Unwind() {
+    current = root;
+  }
+
+  //one line per distinct stack, weighted by self time in microseconds, e.g. "script;While:3;Block:3;Print:5 1200"
+  //this is the collapsed format read by flamegraph.pl, speedscope and similar tools
+  void WriteCollapsed(Path path) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      StringBuilder stack = new StringBuilder(root.label);
+      for (int i = 0; i < root.childCount; i++) {
+        WriteCollapsed(writer, root.children[i], stack);
+      }
+    }
+  }
+
+  //the hottest lines by self time
+  List<Line> HotLines(int limit) {
+    Map<Integer, Line> lines = new HashMap<>();
+    for (int i = 0; i < root.childCount; i++) {
+      CollectLines(root.children[i], lines);
+    }
+
+    //line 0 only holds top-level blocks, which have no line of their own
+    lines.remove(0);
+
+    List<Line> result = new ArrayList<>(lines.values());
+    result.sort(Line.HOTTEST);
+    return result.size() > limit ? result.subList(0, limit) : result;
+  }
+
+  //built with StringBuilders rather than '+' or String.format, whose first use costs a short script more than running it
+  void PrintSummary(PrintStream out, int limit) {
+    out.println(new StringBuilder("profile: ").append(Millis(elapsedNanos)).append(" ms, ").append(sampleCount).append(" samples"));
+    out.println(Row("line", "self ms", "total ms", "hits"));
+    for (Line line : HotLines(limit)) {
+      out.println(Row(Integer.toString(line.line), Millis(Nanos(line.selfSamples)), Millis(Nanos(line.totalSamples)), Long.toString(line.hits)));
+    }
+  }
+
+  //helpers
+  private void Sample() {
+    long begin = System.nanoTime();
+    long taken = 0;
+
+    while (sampling) {
+      LockSupport.parkNanos(SAMPLE_NANOS);
+      Frame frame = current;
+      if (frame != root) {
+        frame.samples++;
+        taken++;
+      }
+    }
+
+    elapsedNanos += System.nanoTime() - begin;
+    sampleCount += taken;
+  }
+
+  private Frame NewFrame(Object node, String kind, int line) {
+    //nodes without a token of their own belong to the line of whatever contains them
+    if (line < 0) {
+      line = current.line;
+    }
+    return new Frame(node, new StringBuilder(kind).append(':').append(line).toString(), line, current);
+  }
+
+  //the sampler rarely wakes exactly on time, so samples are scaled by the time they actually covered
+  private long Nanos(long samples) {
+    if (sampleCount == 0) return 0;
+    return (long)((double)samples * elapsedNanos / sampleCount);
+  }
+
+  private void WriteCollapsed(Writer writer, Frame frame, StringBuilder stack) throws IOException {
+    int length = stack.length();
+    stack.append(';').append(frame.label);
+
+    long micros = Nanos(frame.samples) / 1000;
+    if (micros > 0) {
+      writer.append(stack).append(' ').append(Long.toString(micros)).append('\n');
+    }
+    for (int i = 0; i < frame.childCount; i++) {
+      WriteCollapsed(writer, frame.children[i], stack);
+    }
+
+    stack.setLength(length);
+  }
+
+  private void CollectLines(Frame frame, Map<Integer, Line> lines) {
+    Line line = lines.get(frame.line);
+    if (line == null) {
+      line = new Line(frame.line);
+      lines.put(frame.line, line);
+    }
+    line.selfSamples += frame.samples;
+
+    //only count a line where it's entered from somewhere else, so nested nodes don't double it
+    if (frame.parent.line != frame.line) {
+      line.hits += frame.count;
+      line.totalSamples += frame.TotalSamples();
+    }
+
+    for (int i = 0; i < frame.childCount; i++) {
+      CollectLines(frame.children[i], lines);
+    }
+  }
+
+  //to three decimal places
+  private static String Millis(long nanos) {
+    long micros = nanos / 1000;
+    String fraction = Long.toString(1000 + micros % 1000);
+    return new StringBuilder().append(micros / 1000).append('.').append(fraction, 1, 4).toString();
+  }
+
+  //right-aligned columns
+  private static String Row(String line, String self, String total, String hits) {
+    StringBuilder row = new StringBuilder();
+    Pad(row, line, 8);
+    Pad(row, self, 13);
+    Pad(row, total, 13);
+    Pad(row, hits, 13);
+    return row.toString();
+  }
+
+  private static void Pad(StringBuilder row, String text, int width) {
+    for (int i = text.length(); i < width; i++) {
+      row.append(' ');
+    }
+    row.append(text);
+  }
+}
@@ -0,0 +1,167 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//static pass that assigns each local variable a (depth, slot) pair
+class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+  //one map of name -> slot per enclosing block; empty means global scope
+  private final List<Map<String, Integer>> scopes = new ArrayList<>();
+
+  //wrapper functions
+  void Resolve(List<Stmt> statements) {
+    for (Stmt statement : statements) {
+      Resolve(statement);
+    }
+  }
+
+  //AST types
+  @Override
+  public Void Visit(Expr.Assign expr) {
+    Resolve(expr.value);
+    for (int i = scopes.size() - 1; i >= 0; i--) {
+      Integer slot = scopes.get(i).get(expr.name.Lexeme());
+      if (slot != null) {
+        expr.depth = scopes.size() - 1 - i;
+        expr.slot = slot;
+        return null;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Binary expr) {
+    Resolve(expr.lhs);
+    Resolve(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Grouping expr) {
+    Resolve(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Invariant expr) {
+    Resolve(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Literal expr) {
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Logical expr) {
+    Resolve(expr.lhs);
+    Resolve(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Unary expr) {
+    Resolve(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Variable expr) {
+    for (int i = scopes.size() - 1; i >= 0; i--) {
+      Integer slot = scopes.get(i).get(expr.name.Lexeme());
+      if (slot != null) {
+        expr.depth = scopes.size() - 1 - i;
+        expr.slot = slot;
+        return null;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Block stmt) {
+    //a block that declares nothing gets no scope of its own, and runs in the enclosing environment
+    if (!Declares(stmt)) {
+      Resolve(stmt.statements);
+      stmt.slots = 0;
+      return null;
+    }
+
+    scopes.add(new HashMap<>());
+    Resolve(stmt.statements);
+    stmt.slots = scopes.remove(scopes.size() - 1).size();
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Expression stmt) {
+    Resolve(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.If stmt) {
+    Resolve(stmt.condition);
+    Resolve(stmt.thenBranch);
+    if (stmt.elseBranch != null) {
+      Resolve(stmt.elseBranch);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Print stmt) {
+    Resolve(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Var stmt) {
+    //the initializer can't see the variable being declared
+    if (stmt.initializer != null) {
+      Resolve(stmt.initializer);
+    }
+
+    if (scopes.isEmpty()) {
+      stmt.slot = -1;
+      return null;
+    }
+
+    //redeclaring a name within the same block reuses its slot
+    Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+    Integer slot = scope.get(stmt.name.Lexeme());
+    if (slot == null) {
+      slot = scope.size();
+      scope.put(stmt.name.Lexeme(), slot);
+    }
+    stmt.slot = slot;
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.While stmt) {
+    Resolve(stmt.condition);
+    Resolve(stmt.body);
+    return null;
+  }
+
+  //helpers
+  private static boolean Declares(Stmt.Block block) {
+    for (Stmt statement : block.statements) {
+      if (statement instanceof Stmt.Var) return true;
+    }
+    return false;
+  }
+
+  private void Resolve(Stmt stmt) {
+    stmt.Accept(this);
+  }
+
+  private void Resolve(Expr expr) {
+    expr.Accept(this);
+  }
+}
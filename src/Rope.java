@@ -0,0 +1,95 @@
+package com.krgamestudios.lox;
+
+//a string built by concatenation, backed by a StringBuilder that later concatenations append to
+//a Rope is the first `length` chars of its builder, so `s = s + x` extends the builder in place instead of copying s,
+//and only the Rope at the end of a builder can do that; any other Rope copies first
+//Lox strings are either String or Rope, and a Rope is flattened to a String only when it's printed or compared
+final class Rope {
+  //anything shorter is concatenated as a plain String
+  static final int MIN_LENGTH = 64;
+
+  //members
+  private final StringBuilder builder;
+  private final int length;
+  private final int written; //chars copied into the builder to make this Rope
+  private String flat = null;
+
+  private Rope(StringBuilder builder, int written) {
+    this.builder = builder;
+    this.length = builder.length();
+    this.written = written;
+  }
+
+  static boolean IsString(Object object) {
+    return object instanceof String || object instanceof Rope;
+  }
+
+  //both operands must satisfy IsString()
+  static Object Concat(Object lhs, Object rhs) {
+    if (lhs instanceof Rope) {
+      return ((Rope)lhs).Append(rhs);
+    }
+
+    String left = (String)lhs;
+    if (rhs instanceof String && left.length() + ((String)rhs).length() < MIN_LENGTH) {
+      return left.concat((String)rhs);
+    }
+
+    StringBuilder builder = new StringBuilder(Math.max(MIN_LENGTH * 2, (left.length() + Length(rhs)) * 2));
+    builder.append(left);
+    AppendTo(builder, rhs);
+    return new Rope(builder, builder.length());
+  }
+
+  //roughly how many bytes were allocated to make a string that Concat() just returned
+  static long Size(Object string) {
+    if (string instanceof Rope) {
+      return ((Rope)string).written * 2L;
+    }
+    return ((String)string).length() * 2L;
+  }
+
+  //the plain String for a Lox value, leaving anything else alone
+  static Object Flatten(Object object) {
+    if (object instanceof Rope) {
+      return object.toString();
+    }
+    return object;
+  }
+
+  @Override
+  public String toString() {
+    if (flat == null) {
+      flat = builder.substring(0, length);
+    }
+    return flat;
+  }
+
+  //helpers
+  private Rope Append(Object rhs) {
+    if (builder.length() == length && rhs != this) {
+      AppendTo(builder, rhs);
+      return new Rope(builder, builder.length() - length);
+    }
+
+    //someone else has already appended to this builder
+    StringBuilder copy = new StringBuilder(Math.max(MIN_LENGTH * 2, (length + Length(rhs)) * 2));
+    copy.append(builder, 0, length);
+    AppendTo(copy, rhs);
+    return new Rope(copy, copy.length());
+  }
+
+  private static void AppendTo(StringBuilder builder, Object value) {
+    if (value instanceof Rope) {
+      Rope rope = (Rope)value;
+      builder.append(rope.builder, 0, rope.length);
+    }
+    else {
+      builder.append((String)value);
+    }
+  }
+
+  private static int Length(Object value) {
+    return value instanceof Rope ? ((Rope)value).length : ((String)value).length();
+  }
+}
@@ -1,10 +1,21 @@
 package com.krgamestudios.lox;
 
 class RuntimeError extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
   final Token token;
+  final int line;
 
   RuntimeError(Token token, String msg) {
     super(msg);
     this.token = token;
+    this.line = token.line;
+  }
+
+  //used by backends that only keep a line table
+  RuntimeError(int line, String msg) {
+    super(msg);
+    this.token = null;
+    this.line = line;
   }
 }
@@ -0,0 +1,320 @@
+package com.krgamestudios.lox;
+
+import java.io.PrintStream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//runs independent top-level statements at the same time, for --parallel
+//two statements depend on each other when they touch the same global and at least one of them writes it;
+//statements joined by dependencies form a group, which runs in program order on its own interpreter and its own copy of the globals
+//what each statement prints is held until every group has finished, then written out in program order,
+//so the output, and the first runtime error, are the same as running the statements one after another
+class Scheduler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+  //statements that must run in order, with the globals each one writes
+  private static class Group {
+    final List<Integer> statements = new ArrayList<>();
+    final List<Set<String>> writes = new ArrayList<>();
+    final List<Map<String, Object>> written = new ArrayList<>(); //what each statement that ran left in the globals it writes
+    Environment globals;
+  }
+
+  //what a group printed; each statement's lines are a range of it
+  private static class Lines implements OutputSink {
+    final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void Print(String text) {
+      lines.add(text);
+    }
+
+    @Override
+    public void Flush() {
+      //nothing to do
+    }
+  }
+
+  //members
+  private final Context context;
+  private final PrintStream err;
+
+  //the globals the statement being visited reads and writes
+  private Set<String> reads;
+  private Set<String> writes;
+
+  Scheduler(Context context, PrintStream err) {
+    this.context = context;
+    this.err = err;
+  }
+
+  //wrapper functions
+  void Interpret(List<Stmt> prepared) {
+    List<Group> groups = Partition(prepared);
+
+    int count = prepared.size();
+    Lines[] printed = new Lines[count];
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    RuntimeError[] errors = new RuntimeError[count];
+    AtomicInteger firstError = new AtomicInteger(Integer.MAX_VALUE);
+
+    //each group copies the globals from here; taken before any group starts, so no rope in it is shared with a running group
+    Environment base = context.globals.Snapshot();
+    for (Group group : groups) {
+      group.globals = base.Snapshot();
+    }
+
+    if (groups.size() == 1) {
+      Run(groups.get(0), prepared, printed, starts, ends, errors, firstError);
+    }
+    else {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (Group group : groups) {
+        tasks.add(ForkJoinTask.adapt(() -> Run(group, prepared, printed, starts, ends, errors, firstError)));
+      }
+      ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> { ForkJoinTask.invokeAll(tasks); }));
+    }
+
+    //commit in program order, up to the first error; anything later that ran anyway is dropped
+    for (int i = 0; i < count; i++) {
+      for (int line = starts[i]; line < ends[i]; line++) {
+        context.output.Print(printed[i].lines.get(line));
+      }
+
+      if (errors[i] != null) {
+        context.output.Flush();
+        context.RuntimeError(errors[i]);
+        break;
+      }
+    }
+
+    //no two groups write the same global, so the order they're copied back in doesn't matter
+    //within a group, statements after the first error may have run before it was found, but sequentially they wouldn't have
+    for (Group group : groups) {
+      for (int k = 0; k < group.written.size(); k++) {
+        if (group.statements.get(k) > firstError.get()) break;
+        for (Map.Entry<String, Object> entry : group.written.get(k).entrySet()) {
+          context.globals.Define(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  }
+
+  //join statements that depend on each other, with union-find over their indexes
+  private List<Group> Partition(List<Stmt> statements) {
+    int count = statements.size();
+    List<Set<String>> statementReads = new ArrayList<>();
+    List<Set<String>> statementWrites = new ArrayList<>();
+    Set<String> written = new HashSet<>();
+
+    for (Stmt statement : statements) {
+      reads = new HashSet<>();
+      writes = new HashSet<>();
+      Scan(statement);
+      statementReads.add(reads);
+      statementWrites.add(writes);
+      written.addAll(writes);
+    }
+
+    //globals that are only ever read don't order anything
+    int[] parents = new int[count];
+    Map<String, Integer> firstUse = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      parents[i] = i;
+      for (Set<String> names : List.of(statementReads.get(i), statementWrites.get(i))) {
+        for (String name : names) {
+          if (!written.contains(name)) continue;
+          Integer first = firstUse.putIfAbsent(name, i);
+          if (first != null) {
+            parents[Find(parents, i)] = Find(parents, first);
+          }
+        }
+      }
+    }
+
+    //groups are listed by their first statement
+    Map<Integer, Group> roots = new HashMap<>();
+    List<Group> groups = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Group group = roots.get(Find(parents, i));
+      if (group == null) {
+        group = new Group();
+        roots.put(Find(parents, i), group);
+        groups.add(group);
+      }
+      group.statements.add(i);
+      group.writes.add(statementWrites.get(i));
+    }
+
+    reads = null;
+    writes = null;
+    return groups;
+  }
+
+  //the values a statement left in the globals it writes, including those it wrote before an error
+  private static Map<String, Object> Written(Environment globals, Set<String> names) {
+    Map<String, Object> values = new HashMap<>();
+    for (String name : names) {
+      if (globals.Has(name)) {
+        values.put(name, globals.Get(name, 0));
+      }
+    }
+    return values;
+  }
+
+  private static int Find(int[] parents, int i) {
+    while(parents[i] != i) {
+      parents[i] = parents[parents[i]];
+      i = parents[i];
+    }
+    return i;
+  }
+
+  //core function
+  private void Run(Group group, List<Stmt> statements, Lines[] printed, int[] starts, int[] ends, RuntimeError[] errors, AtomicInteger firstError) {
+    Lines lines = new Lines();
+    Context local = new Context(context.options, lines, err, group.globals);
+    Interpreter interpreter = context.options.useSwitch ? new SwitchInterpreter(local) : new Interpreter(local);
+
+    for (int k = 0; k < group.statements.size(); k++) {
+      int i = group.statements.get(k);
+
+      //sequentially, nothing after an error would run
+      if (i > firstError.get()) return;
+
+      printed[i] = lines;
+      starts[i] = lines.lines.size();
+      try {
+        interpreter.Execute(statements.get(i));
+      }
+      catch(RuntimeError error) {
+        errors[i] = error;
+        firstError.accumulateAndGet(i, Math::min);
+        return;
+      }
+      finally {
+        ends[i] = lines.lines.size();
+        group.written.add(Written(group.globals, group.writes.get(k)));
+      }
+    }
+  }
+
+  //AST types
+  @Override
+  public Void Visit(Expr.Assign expr) {
+    if (expr.depth < 0) {
+      writes.add(expr.name.Lexeme());
+    }
+    Scan(expr.value);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Binary expr) {
+    Scan(expr.lhs);
+    Scan(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Grouping expr) {
+    Scan(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Invariant expr) {
+    Scan(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Literal expr) {
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Logical expr) {
+    Scan(expr.lhs);
+    Scan(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Unary expr) {
+    Scan(expr.rhs);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Expr.Variable expr) {
+    if (expr.depth < 0) {
+      reads.add(expr.name.Lexeme());
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Block stmt) {
+    for (Stmt statement : stmt.statements) {
+      Scan(statement);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Expression stmt) {
+    Scan(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.If stmt) {
+    Scan(stmt.condition);
+    Scan(stmt.thenBranch);
+    if (stmt.elseBranch != null) {
+      Scan(stmt.elseBranch);
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Print stmt) {
+    Scan(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.Var stmt) {
+    if (stmt.initializer != null) {
+      Scan(stmt.initializer);
+    }
+    if (stmt.slot < 0) {
+      writes.add(stmt.name.Lexeme());
+    }
+    return null;
+  }
+
+  @Override
+  public Void Visit(Stmt.While stmt) {
+    Scan(stmt.condition);
+    Scan(stmt.body);
+    return null;
+  }
+
+  //helpers
+  private void Scan(Stmt stmt) {
+    stmt.Accept(this);
+  }
+
+  private void Scan(Expr expr) {
+    expr.Accept(this);
+  }
+}
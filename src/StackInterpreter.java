@@ -0,0 +1,285 @@
+package com.krgamestudios.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+//the tree-walker's semantics without recursion: pending nodes and their intermediate values live on arrays that grow as needed,
+//so how deeply a script nests is bounded by the heap, not by the thread's stack size
+//it runs the parsed AST as is, without the Resolver, so blocks get map environments and variables are looked up by name;
+//without closures, the innermost environment holding a name at runtime is the one the Resolver would have picked
+class StackInterpreter {
+  //members
+  private final Context context;
+  private final OutputSink output;
+  private final Environment globals;
+  private Environment environment;
+
+  //the work stack: a node, and how far through it execution has got
+  private Object[] nodes = new Object[64];
+  private int[] states = new int[64];
+  private int top = 0;
+
+  //finished expressions, waiting for their parent
+  private Object[] values = new Object[64];
+  private int count = 0;
+
+  StackInterpreter(Context context) {
+    this.context = context;
+    this.output = context.output;
+    this.globals = context.globals;
+    this.environment = globals;
+  }
+
+  //wrapper functions
+  void Interpret(List<Stmt> statements) {
+    try {
+      for (Stmt statement : statements) {
+        Push(statement);
+        Run();
+      }
+    }
+    catch(RuntimeError error) {
+      //abandon whatever was in progress
+      top = 0;
+      count = 0;
+      environment = globals;
+
+      //keep the output that came before the error in order with the report
+      output.Flush();
+      context.RuntimeError(error);
+    }
+  }
+
+  //core function
+  private void Run() {
+    while(top > 0) {
+      Object node = nodes[top - 1];
+      if (node instanceof Expr) {
+        Step((Expr)node, states[top - 1]);
+      }
+      else {
+        Step((Stmt)node, states[top - 1]);
+      }
+    }
+  }
+
+  //advance a statement by one state
+  private void Step(Stmt stmt, int state) {
+    switch(stmt.tag) {
+      case Stmt.BLOCK: {
+        List<Stmt> statements = ((Stmt.Block)stmt).statements;
+        if (state == 0) {
+          environment = new Environment(environment);
+        }
+        if (state < statements.size()) {
+          states[top - 1] = state + 1;
+          Push(statements.get(state));
+          return;
+        }
+        environment = environment.parent;
+        top--;
+        return;
+      }
+
+      case Stmt.EXPRESSION:
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(((Stmt.Expression)stmt).expression);
+          return;
+        }
+        Pop();
+        top--;
+        return;
+
+      case Stmt.IF: {
+        Stmt.If ifStmt = (Stmt.If)stmt;
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(ifStmt.condition);
+          return;
+        }
+
+        //the branch takes the if's place
+        top--;
+        if (Interpreter.IsTruthy(Pop())) {
+          Push(ifStmt.thenBranch);
+        }
+        else if (ifStmt.elseBranch != null) {
+          Push(ifStmt.elseBranch);
+        }
+        return;
+      }
+
+      case Stmt.PRINT:
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(((Stmt.Print)stmt).expression);
+          return;
+        }
+        output.Print(Interpreter.Stringify(Pop()));
+        top--;
+        return;
+
+      case Stmt.VAR: {
+        Stmt.Var var = (Stmt.Var)stmt;
+        if (state == 0 && var.initializer != null) {
+          states[top - 1] = 1;
+          Push(var.initializer);
+          return;
+        }
+        environment.Define(var.name.Lexeme(), state == 0 ? null : Pop());
+        top--;
+        return;
+      }
+
+      case Stmt.WHILE: {
+        Stmt.While loop = (Stmt.While)stmt;
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(loop.condition);
+          return;
+        }
+
+        //run the body, then come back to the condition
+        if (Interpreter.IsTruthy(Pop())) {
+          states[top - 1] = 0;
+          Push(loop.body);
+          return;
+        }
+        top--;
+        return;
+      }
+    }
+  }
+
+  //advance an expression by one state; a finished expression leaves its value on the value stack
+  private void Step(Expr expr, int state) {
+    switch(expr.tag) {
+      case Expr.ASSIGN: {
+        Expr.Assign assign = (Expr.Assign)expr;
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(assign.value);
+          return;
+        }
+        environment.Assign(assign.name, values[count - 1]);
+        top--;
+        return;
+      }
+
+      case Expr.BINARY: {
+        Expr.Binary binary = (Expr.Binary)expr;
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(binary.lhs);
+          return;
+        }
+        if (state == 1) {
+          states[top - 1] = 2;
+          Push(binary.rhs);
+          return;
+        }
+        Object rhs = Pop();
+        Object lhs = Pop();
+        Value(Interpreter.ApplyBinary(binary, lhs, rhs));
+        top--;
+        return;
+      }
+
+      case Expr.GROUPING:
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(((Expr.Grouping)expr).expression);
+          return;
+        }
+        top--;
+        return;
+
+      case Expr.INVARIANT:
+        //only the LoopHoister makes these, and it doesn't run before this interpreter; evaluate in place
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(((Expr.Invariant)expr).expression);
+          return;
+        }
+        top--;
+        return;
+
+      case Expr.LITERAL:
+        Value(((Expr.Literal)expr).value);
+        top--;
+        return;
+
+      case Expr.LOGICAL: {
+        Expr.Logical logical = (Expr.Logical)expr;
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(logical.lhs);
+          return;
+        }
+        if (state == 1) {
+          //the lhs is the result when it decides the answer, otherwise the rhs is
+          boolean truthy = Interpreter.IsTruthy(values[count - 1]);
+          if (truthy == (logical.operator.type == TokenType.OR)) {
+            top--;
+            return;
+          }
+          Pop();
+          states[top - 1] = 2;
+          Push(logical.rhs);
+          return;
+        }
+        top--;
+        return;
+      }
+
+      case Expr.UNARY: {
+        Expr.Unary unary = (Expr.Unary)expr;
+        if (state == 0) {
+          states[top - 1] = 1;
+          Push(unary.rhs);
+          return;
+        }
+        Object rhs = Pop();
+        if (unary.operator.type == TokenType.MINUS) {
+          Interpreter.CheckNumberOperand(unary.operator.line, rhs);
+          Value(-(double)rhs);
+        }
+        else {
+          Value(!Interpreter.IsTruthy(rhs));
+        }
+        top--;
+        return;
+      }
+
+      case Expr.VARIABLE:
+        Value(environment.Get(((Expr.Variable)expr).name));
+        top--;
+        return;
+    }
+  }
+
+  //helpers
+  private void Push(Object node) {
+    if (top == nodes.length) {
+      nodes = Arrays.copyOf(nodes, top * 2);
+      states = Arrays.copyOf(states, top * 2);
+    }
+    nodes[top] = node;
+    states[top] = 0;
+    top++;
+  }
+
+  private void Value(Object value) {
+    if (count == values.length) {
+      values = Arrays.copyOf(values, count * 2);
+    }
+    values[count++] = value;
+  }
+
+  private Object Pop() {
+    Object value = values[--count];
+    values[count] = null;
+    return value;
+  }
+}
@@ -0,0 +1,350 @@
+package com.krgamestudios.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.krgamestudios.lox.TokenType.*;
+
+//the Parser's grammar, errors and recovery, with nesting kept on heap-allocated stacks instead of the Java stack
+//statements that contain statements (blocks, if, while, for) become frames that wait for their children,
+//and expressions are parsed by precedence climbing over an operand stack and an operator stack
+class StackParser extends Parser {
+  //a statement waiting on its children
+  private static final int DECLARATION = 0; //catches errors, as Parser.Declaration() does
+  private static final int BLOCK = 1;
+  private static final int IF = 2;
+  private static final int WHILE = 3;
+  private static final int FOR = 4;
+
+  private static class Frame {
+    final int kind;
+    int state = 0; //for IF, 1 once it's waiting on the else branch
+
+    //whatever the statement has parsed so far
+    Token keyword;
+    Expr condition;
+    Expr increment;
+    Stmt initializer;
+    Stmt thenBranch;
+    List<Stmt> statements;
+
+    Frame(int kind) {
+      this.kind = kind;
+    }
+  }
+
+  //binding powers, lowest first; unary operators bind tighter than any binary one
+  private static final int ASSIGNMENT = 1;
+  private static final int UNARY = 8;
+
+  StackParser(TokenStream tokens, Context context) {
+    super(tokens, context);
+  }
+
+  //parser rules
+  @Override
+  Stmt Declaration() {
+    List<Frame> frames = new ArrayList<>();
+    frames.add(new Frame(DECLARATION));
+
+    //either start the statement the top frame waits on, or hand it the one just finished
+    boolean starting = true;
+    Stmt finished = null;
+
+    for (;;) {
+      try {
+        if (starting) {
+          finished = Start(frames);
+          starting = finished == null;
+          continue;
+        }
+
+        Frame frame = frames.get(frames.size() - 1);
+        switch(frame.kind) {
+          case DECLARATION:
+            frames.remove(frames.size() - 1);
+            if (frames.isEmpty()) return finished;
+            break;
+
+          case BLOCK:
+            frame.statements.add(finished);
+            finished = ContinueBlock(frames, frame);
+            starting = finished == null;
+            break;
+
+          case IF:
+            if (frame.state == 0) {
+              frame.thenBranch = finished;
+              if (Match(ELSE)) {
+                frame.state = 1;
+                starting = true;
+                break;
+              }
+              frames.remove(frames.size() - 1);
+              finished = new Stmt.If(frame.condition, frame.thenBranch, null);
+              break;
+            }
+            frames.remove(frames.size() - 1);
+            finished = new Stmt.If(frame.condition, frame.thenBranch, finished);
+            break;
+
+          case WHILE:
+            frames.remove(frames.size() - 1);
+            finished = new Stmt.While(frame.keyword, frame.condition, finished);
+            break;
+
+          case FOR:
+            frames.remove(frames.size() - 1);
+            finished = Desugar(frame, finished);
+            break;
+        }
+      }
+      catch(ParseError error) {
+        //unwind to the innermost declaration, which recovers and stands for nothing
+        while(frames.get(frames.size() - 1).kind != DECLARATION) {
+          frames.remove(frames.size() - 1);
+        }
+        frames.remove(frames.size() - 1);
+        Synchronize();
+
+        if (frames.isEmpty()) return null;
+        finished = null;
+        starting = false;
+      }
+    }
+  }
+
+  //begin a statement for the top frame: a finished leaf statement, or null once a frame for it has been pushed
+  private Stmt Start(List<Frame> frames) {
+    Frame top = frames.get(frames.size() - 1);
+
+    //blocks and the top level hold declarations, everything else holds statements
+    if (top.kind == BLOCK) {
+      frames.add(new Frame(DECLARATION));
+      if (Match(VAR)) return VarDeclaration();
+    }
+    else if (top.kind == DECLARATION && frames.size() == 1) {
+      if (Match(VAR)) return VarDeclaration();
+    }
+
+    if (Match(TokenType.FOR)) {
+      Frame frame = new Frame(FOR);
+      frame.keyword = Previous();
+      ForClauses(frame);
+      frames.add(frame);
+      return null;
+    }
+
+    if (Match(TokenType.IF)) {
+      Frame frame = new Frame(IF);
+      Consume(LEFT_PAREN, "Expected '(' after 'if'.");
+      frame.condition = Expression();
+      Consume(RIGHT_PAREN, "Expected ')' after if condition.");
+      frames.add(frame);
+      return null;
+    }
+
+    if (Match(PRINT)) return PrintStatement();
+
+    if (Match(LEFT_BRACE)) {
+      Frame frame = new Frame(BLOCK);
+      frame.statements = new ArrayList<>();
+      frames.add(frame);
+      return ContinueBlock(frames, frame);
+    }
+
+    if (Match(TokenType.WHILE)) {
+      Frame frame = new Frame(WHILE);
+      frame.keyword = Previous();
+      Consume(LEFT_PAREN, "Expected '(' after 'while'.");
+      frame.condition = Expression();
+      Consume(RIGHT_PAREN, "Expected ')' after while condition.");
+      frames.add(frame);
+      return null;
+    }
+
+    return ExpressionStatement();
+  }
+
+  //wait for another declaration, or close the block; null means a declaration is due
+  private Stmt ContinueBlock(List<Frame> frames, Frame frame) {
+    if (!Check(RIGHT_BRACE) && !IsAtEnd()) {
+      return null;
+    }
+
+    Consume(RIGHT_BRACE, "Expected '}' after block.");
+    frames.remove(frames.size() - 1);
+    return new Stmt.Block(frame.statements);
+  }
+
+  //everything between the parentheses of a for loop
+  private void ForClauses(Frame frame) {
+    Consume(LEFT_PAREN, "Expected '(' after 'for'.");
+
+    //initializer
+    if (Match(SEMICOLON)) {
+      frame.initializer = null;
+    }
+    else if (Match(VAR)) {
+      frame.initializer = VarDeclaration();
+    }
+    else {
+      frame.initializer = ExpressionStatement();
+    }
+
+    //conditional
+    if (!Check(SEMICOLON)) {
+      frame.condition = Expression();
+    }
+    Consume(SEMICOLON, "Expected ';' after loop condition.");
+
+    //increment
+    if (!Check(RIGHT_PAREN)) {
+      frame.increment = Expression();
+    }
+    Consume(RIGHT_PAREN, "Expected ')' after for clause.");
+  }
+
+  //the same while loop the Parser builds
+  private Stmt Desugar(Frame frame, Stmt body) {
+    if (frame.increment != null) {
+      body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(frame.increment)));
+    }
+
+    Expr condition = frame.condition != null ? frame.condition : new Expr.Literal(true);
+    body = new Stmt.While(frame.keyword, condition, body);
+
+    if (frame.initializer != null) {
+      body = new Stmt.Block(Arrays.asList(frame.initializer, body));
+    }
+
+    return body;
+  }
+
+  //operators wait on the operator stack until an operator that binds no tighter arrives, or the expression ends
+  //a LEFT_PAREN on the operator stack marks an open grouping, which nothing reduces past
+  @Override
+  Expr Expression() {
+    List<Expr> operands = new ArrayList<>();
+    List<Token> operators = new ArrayList<>();
+    List<Boolean> unary = new ArrayList<>();
+
+    for (;;) {
+      //prefix operators and open groupings, then an operand
+      for (;;) {
+        if (Match(BANG, MINUS)) {
+          operators.add(Previous());
+          unary.add(true);
+        }
+        else if (Match(LEFT_PAREN)) {
+          operators.add(Previous());
+          unary.add(false);
+        }
+        else {
+          break;
+        }
+      }
+      operands.add(Operand());
+
+      //then binary operators, or closing groupings, or the end
+      for (;;) {
+        int power = BindingPower(tokens.PeekType());
+        if (power > 0) {
+          Advance();
+          Token operator = Previous();
+
+          //assignment is right-associative, everything else left-associative
+          int limit = operator.type == EQUAL ? power + 1 : power;
+          Reduce(operands, operators, unary, limit);
+
+          operators.add(operator);
+          unary.add(false);
+          break;
+        }
+
+        Reduce(operands, operators, unary, 0);
+        if (operators.isEmpty()) {
+          return operands.remove(operands.size() - 1);
+        }
+
+        //only an open grouping is left on top
+        Consume(RIGHT_PAREN, "Expected ')' after expression.");
+        operators.remove(operators.size() - 1);
+        unary.remove(unary.size() - 1);
+        operands.add(new Expr.Grouping(operands.remove(operands.size() - 1)));
+      }
+    }
+  }
+
+  private Expr Operand() {
+    if (Match(FALSE)) return new Expr.Literal(false);
+    if (Match(TRUE)) return new Expr.Literal(true);
+    if (Match(NIL)) return new Expr.Literal(null);
+
+    if (Match(NUMBER, STRING)) {
+      return new Expr.Literal(tokens.PreviousLiteral());
+    }
+
+    if (Match(IDENTIFIER)) return new Expr.Variable(Previous());
+
+    throw Error(Peek(), "Expected expression.");
+  }
+
+  //apply operators, down to an open grouping, while they bind at least as tightly as the limit
+  private void Reduce(List<Expr> operands, List<Token> operators, List<Boolean> unary, int limit) {
+    while(!operators.isEmpty()) {
+      int top = operators.size() - 1;
+      Token operator = operators.get(top);
+      boolean prefix = unary.get(top);
+
+      if (!prefix && operator.type == LEFT_PAREN) return;
+      if ((prefix ? UNARY : BindingPower(operator.type)) < limit) return;
+
+      operators.remove(top);
+      unary.remove(top);
+
+      Expr rhs = operands.remove(operands.size() - 1);
+      if (prefix) {
+        operands.add(new Expr.Unary(operator, rhs));
+        continue;
+      }
+
+      Expr lhs = operands.remove(operands.size() - 1);
+      switch(operator.type) {
+        case EQUAL:
+          if (lhs instanceof Expr.Variable) {
+            operands.add(new Expr.Assign(((Expr.Variable)lhs).name, rhs));
+          }
+          else {
+            //reported, but not thrown, as in the Parser
+            Error(operator, "invalid assignment target.");
+            operands.add(lhs);
+          }
+          break;
+
+        case OR:
+        case AND:
+          operands.add(new Expr.Logical(lhs, operator, rhs));
+          break;
+
+        default:
+          operands.add(new Expr.Binary(lhs, operator, rhs));
+      }
+    }
+  }
+
+  //0 for anything that isn't a binary operator
+  private static int BindingPower(TokenType type) {
+    switch(type) {
+      case EQUAL: return ASSIGNMENT;
+      case OR: return 2;
+      case AND: return 3;
+      case BANG_EQUAL: case EQUAL_EQUAL: return 4;
+      case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL: return 5;
+      case MINUS: case PLUS: return 6;
+      case SLASH: case STAR: return 7;
+      default: return 0;
+    }
+  }
+}
@@ -2,7 +2,23 @@ package com.krgamestudios.lox;
 
 import java.util.List;
 
-abstract class Stmt {
+abstract sealed class Stmt permits Stmt.Block, Stmt.Expression, Stmt.If, Stmt.Print, Stmt.Var, Stmt.While {
+  //tags, for dispatching with a switch
+  static final int BLOCK = 0;
+  static final int EXPRESSION = 1;
+  static final int IF = 2;
+  static final int PRINT = 3;
+  static final int VAR = 4;
+  static final int WHILE = 5;
+
+  final int tag;
+
+  Stmt(int tag) {
+    this.tag = tag;
+  }
+
+  Profiler.Frame frame; //null unless profiling
+
   interface Visitor<R> {
     R Visit(Block stmt);
     R Visit(Expression stmt);
@@ -14,10 +30,12 @@ abstract class Stmt {
 
   abstract <R> R Accept(Visitor<R> visitor);
 
-  static class Block extends Stmt {
+  static final class Block extends Stmt {
     final List<Stmt> statements;
+    int slots;
 
     Block(List<Stmt> statements) {
+      super(BLOCK);
       this.statements = statements;
     }
 
@@ -26,10 +44,11 @@ abstract class Stmt {
     }
   }
 
-  static class Expression extends Stmt {
+  static final class Expression extends Stmt {
     final Expr expression;
 
     Expression(Expr expression) {
+      super(EXPRESSION);
       this.expression = expression;
     }
 
@@ -38,12 +57,13 @@ abstract class Stmt {
     }
   }
 
-  static class If extends Stmt {
+  static final class If extends Stmt {
     final Expr condition;
     final Stmt thenBranch;
     final Stmt elseBranch;
 
     If(Expr condition,Stmt thenBranch,Stmt elseBranch) {
+      super(IF);
       this.condition = condition;
       this.thenBranch = thenBranch;
       this.elseBranch = elseBranch;
@@ -54,10 +74,11 @@ abstract class Stmt {
     }
   }
 
-  static class Print extends Stmt {
+  static final class Print extends Stmt {
     final Expr expression;
 
     Print(Expr expression) {
+      super(PRINT);
       this.expression = expression;
     }
 
@@ -66,11 +87,13 @@ abstract class Stmt {
     }
   }
 
-  static class Var extends Stmt {
+  static final class Var extends Stmt {
     final Token name;
     final Expr initializer;
+    int slot = -1;
 
     Var(Token name,Expr initializer) {
+      super(VAR);
       this.name = name;
       this.initializer = initializer;
     }
@@ -80,11 +103,17 @@ abstract class Stmt {
     }
   }
 
-  static class While extends Stmt {
+  static final class While extends Stmt {
+    final Token keyword;
     final Expr condition;
     final Stmt body;
+    List<Expr.Invariant> invariants;
+    int hotness;
+    CompiledLoop compiled;
 
-    While(Expr condition,Stmt body) {
+    While(Token keyword,Expr condition,Stmt body) {
+      super(WHILE);
+      this.keyword = keyword;
       this.condition = condition;
       this.body = body;
     }
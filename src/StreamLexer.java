@@ -0,0 +1,45 @@
+package com.krgamestudios.lox;
+
+import java.io.Reader;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+//pull-based token stream that reads its source incrementally and scans one token ahead
+//only the characters of the token being scanned are kept in memory
+class StreamLexer implements TokenStream {
+  //members
+  private final Lexer lexer;
+  private Token previous = null;
+  private Token next = null;
+
+  //methods
+  StreamLexer(Reader reader, Context context) {
+    this.lexer = new Lexer(reader, context);
+  }
+
+  StreamLexer(ReadableByteChannel channel, Charset charset, Context context) {
+    this(Channels.newReader(channel, charset.newDecoder(), -1), context);
+  }
+
+  //TokenStream
+  @Override
+  public Token Peek() {
+    if (next == null) {
+      next = lexer.Next();
+    }
+    return next;
+  }
+
+  @Override
+  public Token Previous() {
+    return previous;
+  }
+
+  @Override
+  public void Advance() {
+    previous = Peek();
+    next = null;
+  }
+}
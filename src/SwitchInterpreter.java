@@ -0,0 +1,39 @@
+package com.krgamestudios.lox;
+
+//the tree-walker, dispatching on each node's tag with a switch instead of through Accept()
+//the Visit() methods are the Interpreter's own, so both run the same semantics; only the dispatch differs
+//Context only picks this when it isn't profiling, since the profiler's hooks live in the Interpreter's dispatch
+final class SwitchInterpreter extends Interpreter {
+  SwitchInterpreter(Context context) {
+    super(context);
+  }
+
+  @Override
+  void Execute(Stmt stmt) {
+    switch(stmt.tag) {
+      case Stmt.BLOCK: Visit((Stmt.Block)stmt); return;
+      case Stmt.EXPRESSION: Visit((Stmt.Expression)stmt); return;
+      case Stmt.IF: Visit((Stmt.If)stmt); return;
+      case Stmt.PRINT: Visit((Stmt.Print)stmt); return;
+      case Stmt.VAR: Visit((Stmt.Var)stmt); return;
+      case Stmt.WHILE: Visit((Stmt.While)stmt); return;
+    }
+  }
+
+  @Override
+  Object Evaluate(Expr expr) {
+    switch(expr.tag) {
+      case Expr.ASSIGN: return Visit((Expr.Assign)expr);
+      case Expr.BINARY: return Visit((Expr.Binary)expr);
+      case Expr.GROUPING: return Visit((Expr.Grouping)expr);
+      case Expr.INVARIANT: return Visit((Expr.Invariant)expr);
+      case Expr.LITERAL: return Visit((Expr.Literal)expr);
+      case Expr.LOGICAL: return Visit((Expr.Logical)expr);
+      case Expr.UNARY: return Visit((Expr.Unary)expr);
+      case Expr.VARIABLE: return Visit((Expr.Variable)expr);
+    }
+
+    //unreachable
+    return null;
+  }
+}
@@ -3,19 +3,44 @@ package com.krgamestudios.lox;
 class Token {
   //Members
   final TokenType type;
-  final String lexeme;
   final Object literal;
   final int line;
 
+  //the lexeme, or where it is in the source until it's first read
+  private String lexeme;
+  private final String source;
+  private final int start;
+  private final int length;
+
   //Methods
   Token(TokenType type, String lexeme, Object literal, int line) {
     this.type = type;
     this.lexeme = lexeme;
     this.literal = literal;
     this.line = line;
+    this.source = null;
+    this.start = 0;
+    this.length = 0;
+  }
+
+  //for tokens whose lexeme is rarely needed, like number and string literals
+  Token(TokenType type, String source, int start, int length, Object literal, int line) {
+    this.type = type;
+    this.literal = literal;
+    this.line = line;
+    this.source = source;
+    this.start = start;
+    this.length = length;
+  }
+
+  String Lexeme() {
+    if (lexeme == null) {
+      lexeme = source.substring(start, start + length);
+    }
+    return lexeme;
   }
 
   public String toString() { //toString is used by System.out.println
-    return type + " " + lexeme + " " + literal;
+    return type + " " + Lexeme() + " " + literal;
   }
 }
@@ -0,0 +1,159 @@
+package com.krgamestudios.lox;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//compact token stream held in parallel primitive arrays, one entry per token
+//Token objects, and their lexeme strings, are only built when the Parser asks for one
+//identifiers keep their Interner id instead of a literal, so their lexemes are never copied out of the source
+class TokenBuffer implements TokenStream {
+  private static final TokenType[] TYPES = TokenType.values();
+
+  //members
+  private final String source;
+  private final Interner names;
+
+  private byte[] types = new byte[1024];
+  private int[] starts = new int[1024];
+  private int[] lengths = new int[1024];
+  private int[] lines = new int[1024];
+  private int[] literals = new int[1024]; //index into literalTable, -1 for none, or the name's id for identifiers
+  private int count = 0;
+
+  private Object[] literalTable = new Object[64];
+  private int literalCount = 0;
+  private final Map<Object, Integer> numberIndexes = new IdentityHashMap<>(); //the Lexer boxes each distinct number once
+
+  //read position, and the most recently built Token
+  private int current = 0;
+  private int cachedIndex = -1;
+  private Token cachedToken = null;
+
+  TokenBuffer(String source, Interner names) {
+    this.source = source;
+    this.names = names;
+  }
+
+  //filled in by the Lexer
+  void Add(TokenType type, int start, int length, Object literal, int line) {
+    if (count == types.length) {
+      Grow();
+    }
+
+    types[count] = (byte)type.ordinal();
+    starts[count] = start;
+    lengths[count] = length;
+    lines[count] = line;
+    literals[count] = literal == null ? -1 : AddLiteral(literal);
+    count++;
+  }
+
+  void AddIdentifier(int start, int length, int id, int line) {
+    if (count == types.length) {
+      Grow();
+    }
+
+    types[count] = (byte)TokenType.IDENTIFIER.ordinal();
+    starts[count] = start;
+    lengths[count] = length;
+    lines[count] = line;
+    literals[count] = id;
+    count++;
+  }
+
+  int Count() {
+    return count;
+  }
+
+  //start reading from the first token again
+  TokenBuffer Rewind() {
+    current = 0;
+    return this;
+  }
+
+  //TokenStream
+  @Override
+  public Token Peek() {
+    return Get(current);
+  }
+
+  @Override
+  public Token Previous() {
+    return Get(current - 1);
+  }
+
+  @Override
+  public void Advance() {
+    current++;
+  }
+
+  @Override
+  public TokenType PeekType() {
+    return TYPES[types[current]];
+  }
+
+  @Override
+  public Object PreviousLiteral() {
+    int index = literals[current - 1];
+    if (index < 0 || types[current - 1] == TokenType.IDENTIFIER.ordinal()) return null;
+    return literalTable[index];
+  }
+
+  //helpers
+  private Token Get(int index) {
+    if (index != cachedIndex) {
+      TokenType type = TYPES[types[index]];
+
+      if (type == TokenType.IDENTIFIER) {
+        cachedToken = new Token(type, names.Name(literals[index]), null, lines[index]);
+      }
+      else {
+        Object literal = literals[index] < 0 ? null : literalTable[literals[index]];
+        String lexeme = Keywords.Text(type);
+        if (lexeme != null) {
+          cachedToken = new Token(type, lexeme, literal, lines[index]);
+        }
+        else {
+          cachedToken = new Token(type, source, starts[index], lengths[index], literal, lines[index]);
+        }
+      }
+      cachedIndex = index;
+    }
+    return cachedToken;
+  }
+
+  private int AddLiteral(Object literal) {
+    if (literal instanceof Double) {
+      Integer index = numberIndexes.get(literal);
+      if (index != null) return index;
+      numberIndexes.put(literal, literalCount);
+    }
+
+    if (literalCount == literalTable.length) {
+      Object[] grown = new Object[literalTable.length * 2];
+      System.arraycopy(literalTable, 0, grown, 0, literalCount);
+      literalTable = grown;
+    }
+    literalTable[literalCount] = literal;
+    return literalCount++;
+  }
+
+  private void Grow() {
+    int capacity = types.length * 2;
+
+    byte[] grownTypes = new byte[capacity];
+    System.arraycopy(types, 0, grownTypes, 0, count);
+    types = grownTypes;
+
+    starts = Grow(starts, capacity);
+    lengths = Grow(lengths, capacity);
+    lines = Grow(lines, capacity);
+    literals = Grow(literals, capacity);
+  }
+
+  private int[] Grow(int[] array, int capacity) {
+    int[] grown = new int[capacity];
+    System.arraycopy(array, 0, grown, 0, count);
+    return grown;
+  }
+}
@@ -0,0 +1,17 @@
+package com.krgamestudios.lox;
+
+//where the Parser pulls its tokens from, one at a time
+interface TokenStream {
+  Token Peek(); //the next unconsumed token, EOF once the input is exhausted
+  Token Previous(); //the most recently consumed token
+  void Advance();
+
+  //streams that store tokens compactly can answer these without building a Token
+  default TokenType PeekType() {
+    return Peek().type;
+  }
+
+  default Object PreviousLiteral() {
+    return Previous().literal;
+  }
+}
@@ -0,0 +1,220 @@
+package com.krgamestudios.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//stack-based dispatch loop that executes a compiled Chunk
+class VM {
+  //members
+  private final Map<String, Object> globals = new HashMap<>();
+  private final Context context;
+  private final OutputSink output;
+
+  private Object[] stack = new Object[256];
+  private int top = 0;
+
+  VM(Context context) {
+    this.context = context;
+    this.output = context.output;
+  }
+
+  //wrapper functions
+  void Interpret(Chunk chunk) {
+    try {
+      Run(chunk);
+    }
+    catch(RuntimeError error) {
+      top = 0;
+      output.Flush();
+      context.RuntimeError(error);
+    }
+  }
+
+  //core function
+  private void Run(Chunk chunk) {
+    final byte[] code = chunk.code;
+    final Object[] constants = chunk.constants.toArray();
+    int ip = 0;
+
+    for (;;) {
+      byte instruction = code[ip++];
+      switch(instruction) {
+        case OpCode.CONSTANT:
+          Push(constants[ReadShort(code, ip)]);
+          ip += 2;
+          break;
+
+        case OpCode.NIL: Push(null); break;
+        case OpCode.TRUE: Push(true); break;
+        case OpCode.FALSE: Push(false); break;
+        case OpCode.POP: top--; break;
+
+        case OpCode.POP_N:
+          top -= ReadShort(code, ip);
+          ip += 2;
+          break;
+
+        case OpCode.GET_LOCAL:
+          Push(stack[ReadShort(code, ip)]);
+          ip += 2;
+          break;
+
+        case OpCode.SET_LOCAL:
+          stack[ReadShort(code, ip)] = stack[top - 1];
+          ip += 2;
+          break;
+
+        case OpCode.GET_GLOBAL: {
+          String name = (String)constants[ReadShort(code, ip)];
+          if (!globals.containsKey(name)) {
+            throw new RuntimeError(chunk.GetLine(ip - 1), "Undefined variable '" + name + "'.");
+          }
+          Push(globals.get(name));
+          ip += 2;
+          break;
+        }
+
+        case OpCode.SET_GLOBAL: {
+          String name = (String)constants[ReadShort(code, ip)];
+          if (!globals.containsKey(name)) {
+            throw new RuntimeError(chunk.GetLine(ip - 1), "Undefined variable '" + name + "'.");
+          }
+          globals.put(name, stack[top - 1]);
+          ip += 2;
+          break;
+        }
+
+        case OpCode.DEFINE_GLOBAL:
+          globals.put((String)constants[ReadShort(code, ip)], stack[--top]);
+          ip += 2;
+          break;
+
+        //equality operators
+        case OpCode.EQUAL: {
+          Object rhs = stack[--top];
+          stack[top - 1] = Interpreter.IsEqual(stack[top - 1], rhs);
+          break;
+        }
+
+        case OpCode.NOT_EQUAL: {
+          Object rhs = stack[--top];
+          stack[top - 1] = !Interpreter.IsEqual(stack[top - 1], rhs);
+          break;
+        }
+
+        //comparison operators
+        case OpCode.GREATER:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] > (double)stack[top - 1];
+          top--;
+          break;
+
+        case OpCode.GREATER_EQUAL:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] >= (double)stack[top - 1];
+          top--;
+          break;
+
+        case OpCode.LESS:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] < (double)stack[top - 1];
+          top--;
+          break;
+
+        case OpCode.LESS_EQUAL:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] <= (double)stack[top - 1];
+          top--;
+          break;
+
+        //arithmetic operators
+        case OpCode.ADD: {
+          Object lhs = stack[top - 2];
+          Object rhs = stack[top - 1];
+          if (lhs instanceof Double && rhs instanceof Double) {
+            stack[top - 2] = (double)lhs + (double)rhs;
+          }
+          else if (Rope.IsString(lhs) && Rope.IsString(rhs)) {
+            stack[top - 2] = Rope.Concat(lhs, rhs);
+          }
+          else {
+            throw new RuntimeError(chunk.GetLine(ip - 1), "Operands must be two numbers or two strings.");
+          }
+          top--;
+          break;
+        }
+
+        case OpCode.SUBTRACT:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] - (double)stack[top - 1];
+          top--;
+          break;
+
+        case OpCode.MULTIPLY:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] * (double)stack[top - 1];
+          top--;
+          break;
+
+        case OpCode.DIVIDE:
+          CheckNumberOperands(chunk, ip);
+          stack[top - 2] = (double)stack[top - 2] / (double)stack[top - 1];
+          top--;
+          break;
+
+        case OpCode.NOT:
+          stack[top - 1] = !Interpreter.IsTruthy(stack[top - 1]);
+          break;
+
+        case OpCode.NEGATE:
+          if (!(stack[top - 1] instanceof Double)) {
+            throw new RuntimeError(chunk.GetLine(ip - 1), "Operand must be a number.");
+          }
+          stack[top - 1] = -(double)stack[top - 1];
+          break;
+
+        //statements and control flow
+        case OpCode.PRINT:
+          output.Print(Interpreter.Stringify(stack[--top]));
+          break;
+
+        case OpCode.JUMP:
+          ip += 2 + ReadShort(code, ip);
+          break;
+
+        case OpCode.JUMP_IF_FALSE:
+          if (!Interpreter.IsTruthy(stack[top - 1])) {
+            ip += ReadShort(code, ip);
+          }
+          ip += 2;
+          break;
+
+        case OpCode.LOOP:
+          ip = ip + 2 - ReadShort(code, ip);
+          break;
+
+        case OpCode.RETURN:
+          return;
+      }
+    }
+  }
+
+  //helpers
+  private void Push(Object value) {
+    if (top == stack.length) {
+      Object[] grown = new Object[stack.length * 2];
+      System.arraycopy(stack, 0, grown, 0, top);
+      stack = grown;
+    }
+    stack[top++] = value;
+  }
+
+  private static int ReadShort(byte[] code, int ip) {
+    return ((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF);
+  }
+
+  private void CheckNumberOperands(Chunk chunk, int ip) {
+    if (stack[top - 2] instanceof Double && stack[top - 1] instanceof Double) return;
+    throw new RuntimeError(chunk.GetLine(ip - 1), "Operands must be a number.");
+  }
+}
@@ -6,32 +6,38 @@ import java.util.Arrays;
 import java.util.List;
 
 public class Tool {
+  private static boolean sealed = false;
+
   public static void main(String[] args) throws IOException {
-    if (args.length != 2) {
-      System.err.println("Usage: tool OP [outfile]");
+    if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("sealed"))) {
+      System.err.println("Usage: tool OP [outfile] [sealed]");
       System.exit(1);
     }
 
+    //"sealed" closes the hierarchy and tags each node, so passes can dispatch with a switch instead of a visitor
+    sealed = args.length == 3;
+
     //choose the correct mode
     if (args[0].equals("Expr")) {
       DefineAst(args[1], "Expr", Arrays.asList(
-        "Assign   : Token name,Expr value",
-        "Binary   : Expr lhs,Token operator,Expr rhs",
+        "Assign   : Token name,Expr value | int depth = -1,int slot",
+        "Binary   : Expr lhs,Token operator,Expr rhs | BinaryNode node = BinaryNode.UNINITIALIZED",
         "Grouping : Expr expression",
+        "Invariant : Expr expression | int index",
         "Literal  : Object value",
         "Logical  : Expr lhs,Token operator,Expr rhs",
         "Unary    : Token operator,Expr rhs",
-        "Variable : Token name"
+        "Variable : Token name | int depth = -1,int slot"
       ));
     }
     else if (args[0].equals("Stmt")) {
       DefineAst(args[1], "Stmt", Arrays.asList(
-        "Block      : List<Stmt> statements",
+        "Block      : List<Stmt> statements | int slots",
         "Expression : Expr expression",
         "If         : Expr condition,Stmt thenBranch,Stmt elseBranch",
         "Print      : Expr expression",
-        "Var        : Token name,Expr initializer",
-        "While      : Expr condition,Stmt body"
+        "Var        : Token name,Expr initializer | int slot = -1",
+        "While      : Token keyword,Expr condition,Stmt body | List<Expr.Invariant> invariants,int hotness,CompiledLoop compiled"
       ));
     }
     else {
@@ -49,21 +55,60 @@ public class Tool {
     writer.println("");
     writer.println("import java.util.List;");
     writer.println("");
-    writer.println("abstract class " + baseName + " {");
+    if (sealed) {
+      writer.println("abstract sealed class " + baseName + " permits " + Permits(baseName, types) + " {");
+      DefineASTTags(writer, baseName, types);
+    }
+    else {
+      writer.println("abstract class " + baseName + " {");
+    }
+
+    //there are no calls, so each node is reached along one path, and the profiler keeps its frame here
+    writer.println("  Profiler.Frame frame; //null unless profiling");
+    writer.println("");
 
     DefineASTVisitor(writer, baseName, types);
 
     //write each AST class
     for (String type : types) {
       String className = type.split(":")[0].trim();
-      String fields = type.split(":")[1].trim();
-      DefineASTType(writer, baseName, className, fields);
+      String[] parts = type.split(":")[1].split("\\|");
+      String fields = parts[0].trim();
+      String annotations = parts.length > 1 ? parts[1].trim() : null;
+      DefineASTType(writer, baseName, className, fields, annotations);
     }
 
     writer.println("}");
     writer.close();
   }
 
+  private static String Permits(String baseName, List<String> types) {
+    StringBuilder permits = new StringBuilder();
+    for (String type : types) {
+      if (permits.length() > 0) {
+        permits.append(", ");
+      }
+      permits.append(baseName + "." + type.split(":")[0].trim());
+    }
+    return permits.toString();
+  }
+
+  private static void DefineASTTags(PrintWriter writer, String baseName, List<String> types) {
+    //a constant for each type, which every node carries
+    writer.println("  //tags, for dispatching with a switch");
+    for (int i = 0; i < types.size(); i++) {
+      String typeName = types.get(i).split(":")[0].trim();
+      writer.println("  static final int " + typeName.toUpperCase() + " = " + i + ";");
+    }
+    writer.println("");
+    writer.println("  final int tag;");
+    writer.println("");
+    writer.println("  " + baseName + "(int tag) {");
+    writer.println("    this.tag = tag;");
+    writer.println("  }");
+    writer.println("");
+  }
+
   private static void DefineASTVisitor(PrintWriter writer, String baseName, List<String> types) {
     //create a visitor for each type
     writer.println("  interface Visitor<R> {");
@@ -78,22 +123,32 @@ public class Tool {
     writer.println("  abstract <R> R Accept(Visitor<R> visitor);");
   }
 
-  private static void DefineASTType(PrintWriter writer, String baseName, String className, String fieldList) {
+  private static void DefineASTType(PrintWriter writer, String baseName, String className, String fieldList, String annotationList) {
     //store parameters in fields
     String[] fields = fieldList.split(",");
 
     //open
     writer.println("");
-    writer.println("  static class " + className + " extends " + baseName + " {");
+    writer.println("  static " + (sealed ? "final " : "") + "class " + className + " extends " + baseName + " {");
 
     //fields themselves
     for (String field : fields) {
       writer.println("    final " + field + ";");
     }
+
+    //mutable annotations filled in by later passes (after the '|')
+    if (annotationList != null) {
+      for (String annotation : annotationList.split(",")) {
+        writer.println("    " + annotation.trim() + ";");
+      }
+    }
     writer.println("");
 
     //constructor
     writer.println("    " + className + "(" + fieldList + ") {");
+    if (sealed) {
+      writer.println("      super(" + className.toUpperCase() + ");");
+    }
     for(String field : fields) {
       String name = field.split(" ")[1];
       writer.println("      this." + name + " = " + name + ";");